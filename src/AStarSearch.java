@@ -0,0 +1,29 @@
+/***
+ A* search on a weighted GraphSearch grid, Dijkstra's algorithm with cells
+ taken off the frontier by the cost to reach them plus the fewest steps
+ left to the goal. No cell costs less than 1 to enter, so that guess never
+ overestimates and the path found is still a cheapest one. Between cells of
+ the same estimate the one furthest along is taken first.
+ ***/
+
+public class AStarSearch extends DijkstraSearch {
+
+    public AStarSearch() {
+        this(DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    // Creates an A* search over a new weighted grid of the given size
+    public AStarSearch(int width, int height) {
+        super(width, height);
+    }
+
+    protected long priority(int cell, int cost) {
+        int steps = Math.abs(goal % width - cell % width) + Math.abs(goal / width - cell / width);
+        // Estimate in the high half, the higher the cost so far the lower the low half
+        return ((long)(cost + steps) << 32) - cost;
+    }
+
+    public String getTitle() {
+        return "A* Search";
+    }
+}
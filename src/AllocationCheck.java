@@ -0,0 +1,177 @@
+/****************************************************
+ Checks that cycle() allocates nothing once a visualization is running.
+
+ Every visualization on the class path is cycled for a warmup of
+ WARMUP_CYCLES, whatever the number of cycles checked, so the JIT has
+ compiled it, then for the given number of cycles while the allocation
+ counters are watched. Those are the counters of the calling thread and of
+ every thread started since the check began, such as generator threads
+ and the pool workers of parallel sorts. Visualizations that finish are
+ created again, and what creating them allocates is left out. Sorts are
+ created over arrays of the given size, TraceReplay replays a recording of
+ QuickSort, and visualizations that need other arguments are skipped.
+
+ Any allocation is reported and makes the exit code 1, so scripts (and
+ builds) can fail on it. Threads without an allocation counter, such as
+ the virtual threads generators use on newer JVMs, can not be watched,
+ and the result of a visualization that ran on one is marked partial.
+
+ Usage from Visualizer/
+     java -cp bin/ AllocationCheck [cycles] [sort size]
+****************************************************/
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Locale;
+
+public class AllocationCheck {
+    static final long DEFAULT_CYCLES = 2000000;
+    static final int DEFAULT_SIZE = 1000;
+    // Cycles run before checking, however many are checked
+    static final long WARMUP_CYCLES = 1000000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    // Bytes allocated by reading the allocation counter itself
+    private static long counterOverhead;
+    // Threads alive before any visualization was created, sorted, only those started since are watched
+    private static long[] startupThreads;
+    // Set once a visualization has run on a thread whose allocation could not be read
+    private static boolean unmeasured;
+
+    /***
+        Creates a visualization to check, or returns null if the class can not be created.
+    ***/
+    static Visualizer create(Class<? extends Visualizer> visualizationClass, int size, File trace) throws Exception {
+        if (visualizationClass == TraceReplay.class) {
+            return new TraceReplay(new SortTracePlayer(trace), 1);
+        }
+        if (Sort.class.isAssignableFrom(visualizationClass)) {
+            return visualizationClass.getConstructor(int[].class).newInstance((Object)Sort.shuffledRange(size, size));
+        }
+        try {
+            return visualizationClass.getConstructor().newInstance();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /***
+        Bytes allocated by the given number of cycle() calls, leaving out creating the
+        visualization again each time it finishes.
+    ***/
+    static long allocatedBytes(Class<? extends Visualizer> visualizationClass, int size, File trace, long cycles) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        long bytes = 0, run = 0;
+        while (run < cycles) {
+            Visualizer visualization = create(visualizationClass, size, trace);
+            boolean done = false;
+            // Other threads are read outside the window of this one, reading them allocates
+            long[] otherThreads = startedThreads();
+            long[] otherBefore = THREADS.getThreadAllocatedBytes(otherThreads);
+            long before = THREADS.getThreadAllocatedBytes(threadId);
+            while (!done && run < cycles) {
+                done = visualization.cycle();
+                run++;
+            }
+            bytes += Math.max(0, THREADS.getThreadAllocatedBytes(threadId) - before - counterOverhead);
+            bytes += otherBytes(otherThreads, otherBefore);
+            if (visualization instanceof GeneratorSort && Generator.usesVirtualThreads()) {
+                unmeasured = true;
+            }
+            close(visualization);
+        }
+        return bytes;
+    }
+
+    // Ids of the threads other than this one started since the check began, sorted
+    private static long[] startedThreads() {
+        long[] ids = THREADS.getAllThreadIds();
+        long self = Thread.currentThread().getId();
+        int count = 0;
+        for (long id : ids) {
+            if (id != self && Arrays.binarySearch(startupThreads, id) < 0) {
+                ids[count++] = id;
+            }
+        }
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    // Bytes allocated by the started threads since their counters read before, all of it for threads started since
+    private static long otherBytes(long[] threadsBefore, long[] before) {
+        long[] threads = startedThreads();
+        long[] after = THREADS.getThreadAllocatedBytes(threads);
+        long bytes = 0;
+        for (int i = 0; i < threads.length; i++) {
+            if (after[i] < 0) {
+                unmeasured = true;
+                continue;
+            }
+            int known = Arrays.binarySearch(threadsBefore, threads[i]);
+            bytes += after[i] - (known >= 0 && before[known] >= 0 ? before[known] : 0);
+        }
+        return bytes;
+    }
+
+    // Lets a generator visualization dropped half way end its thread
+    private static void close(Visualizer visualization) throws Exception {
+        if (visualization instanceof AutoCloseable) {
+            ((AutoCloseable)visualization).close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        long cycles = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_CYCLES;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SIZE;
+
+        File trace = File.createTempFile("allocation", ".trace");
+        trace.deleteOnExit();
+        SortTrace.record(new QuickSort(Sort.shuffledRange(size, size)), trace, 0);
+
+        // Reading the counter may itself allocate, measure that with no cycles in between
+        long threadId = Thread.currentThread().getId();
+        startupThreads = THREADS.getAllThreadIds();
+        Arrays.sort(startupThreads);
+        counterOverhead = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long before = THREADS.getThreadAllocatedBytes(threadId);
+            counterOverhead = Math.min(counterOverhead, THREADS.getThreadAllocatedBytes(threadId) - before);
+        }
+
+        boolean failed = false;
+        for (String name : VisualizationRegistry.classPathNames()) {
+            Class<?> myClass;
+            try {
+                myClass = Class.forName(name, false, AllocationCheck.class.getClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                continue;
+            }
+            if (!Visualizer.class.isAssignableFrom(myClass) || Modifier.isAbstract(myClass.getModifiers())) {
+                continue;
+            }
+            Class<? extends Visualizer> visualizationClass = myClass.asSubclass(Visualizer.class);
+            Visualizer probe = create(visualizationClass, size, trace);
+            close(probe);
+            if (probe == null) {
+                System.out.println(String.format(Locale.ROOT, "%-20s skipped, needs arguments", name));
+                continue;
+            }
+            // Let the JIT settle first, code that is still interpreted allocates where compiled code does not
+            allocatedBytes(visualizationClass, size, trace, WARMUP_CYCLES);
+            unmeasured = false;
+            long bytes = allocatedBytes(visualizationClass, size, trace, cycles);
+            boolean clean = bytes == 0;
+            failed |= !clean;
+            System.out.println(String.format(Locale.ROOT, "%-20s %s %12d bytes over %d cycles (%.3f B/cycle)%s",
+                name, clean ? "ok  " : "FAIL", bytes, cycles, (double)bytes / cycles,
+                unmeasured ? ", partial: ran on threads whose allocation can not be read" : ""));
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/****************************************************
+ Runs every sort to completion without a window or delays and reports how
+ much work each one did.
+
+ Every non-abstract Sort on the class path with a constructor taking its
+ starting values is run for each combination of input, array size and
+ seed. Inputs are SortDistributions or SortDataset files (see
+ SortInput). Each run is checked to have actually sorted its array and to
+ draw no bar taller than its tallest value, and the report (CSV, or JSON
+ when the file name ends in .json) lists reads, comparisons, swaps,
+ writes, cycle() calls, wall time and p50/p99 time per cycle().
+
+ Usage from Visualizer/
+     java -cp bin/ BatchRunner [report file] [sizes, comma separated] [seeds, comma separated] [max cycles] [inputs, comma separated]
+****************************************************/
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class BatchRunner {
+    static final String DEFAULT_SIZES = "0,1,50,1000,5000", DEFAULT_SEEDS = "1,2,3", DEFAULT_INPUTS = "random";
+
+    /***
+        Outcome of running one sort once.
+    ***/
+    static class Run {
+        String name, input;
+        int size;
+        long seed, cycles, reads, comparisons, swaps, writes, wallNanos, p50, p99;
+        boolean sorted, finished, drawn;
+    }
+
+    /***
+        Runs a sort of the given class over the values of the given input, size and seed until it
+        reports it is done, or maxCycles cycle() calls when maxCycles > 0.
+    ***/
+    static Run run(Class<? extends Sort> sortClass, String input, int size, long seed, long maxCycles) throws Exception {
+        int[] values = SortInput.forName(input).values(size, seed);
+        Sort sort = sortClass.getConstructor(int[].class).newInstance((Object)values);
+        LatencyHistogram latency = new LatencyHistogram();
+
+        Run run = new Run();
+        long start = System.nanoTime();
+        long before = start;
+        boolean done = false;
+        while (!done && (maxCycles <= 0 || run.cycles < maxCycles)) {
+            done = sort.cycle();
+            long after = System.nanoTime();
+            latency.record(after - before);
+            before = after;
+            run.cycles++;
+        }
+        run.wallNanos = System.nanoTime() - start;
+        // A generator sort stopped at maxCycles has to be told so its thread can end
+        if (sort instanceof AutoCloseable) {
+            ((AutoCloseable)sort).close();
+        }
+
+        run.name = sortClass.getName();
+        run.input = input;
+        run.size = values.length;
+        run.seed = seed;
+        run.finished = done;
+        run.sorted = isSorted(sort.array);
+        run.drawn = drawnBarHeight(sort) <= sort.tallestBarHeight() + 1;
+        run.reads = sort.getReads();
+        run.comparisons = sort.getComparisons();
+        run.swaps = sort.getSwaps();
+        run.writes = sort.getWrites();
+        run.p50 = latency.getPercentile(50);
+        run.p99 = latency.getPercentile(99);
+        return run;
+    }
+
+    static boolean isSorted(int[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i - 1] > values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /***
+        Paints a frame of the sort and measures its tallest bar, counting up from the bottom of
+        the graph in each pixel column. The tick at the last value written can add a pixel.
+    ***/
+    static int drawnBarHeight(Sort sort) {
+        BufferedImage frame = new BufferedImage(Visualizer.DRAW_WIDTH, Visualizer.DRAW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = frame.createGraphics();
+        sort.paintVisualization(g2d);
+        g2d.dispose();
+        // Nothing but the background is drawn left of the graph
+        int background = frame.getRGB(0, Sort.GRAPH_BOTTOM - 1);
+        int tallest = 0;
+        for (int x = Sort.GRAPH_LEFT; x < Sort.GRAPH_LEFT + Sort.GRAPH_WIDTH; x++) {
+            int height = 0;
+            while (height < Sort.GRAPH_HEIGHT && frame.getRGB(x, Sort.GRAPH_BOTTOM - 1 - height) != background) {
+                height++;
+            }
+            tallest = Math.max(tallest, height);
+        }
+        return tallest;
+    }
+
+    /***
+        Finds every class in the default package of the class path that is a non-abstract Sort
+        and can be created over a given array.
+    ***/
+    static List<Class<? extends Sort>> findSorts() throws IOException {
+        List<Class<? extends Sort>> sorts = new ArrayList<>();
+        for (String name : VisualizationRegistry.classPathNames()) {
+            try {
+                Class<?> myClass = Class.forName(name, false, BatchRunner.class.getClassLoader());
+                if (Sort.class.isAssignableFrom(myClass) && !Modifier.isAbstract(myClass.getModifiers())) {
+                    myClass.getConstructor(int[].class);
+                    sorts.add(myClass.asSubclass(Sort.class));
+                }
+            } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+                // Not something we can run
+            }
+        }
+        return sorts;
+    }
+
+    static void writeCsv(List<Run> runs, PrintWriter out) {
+        out.println("algorithm,input,size,seed,finished,sorted,cycles,reads,comparisons,swaps,writes,wall_ns,p50_cycle_ns,p99_cycle_ns");
+        for (Run run : runs) {
+            out.println(String.format(Locale.ROOT, "%s,%s,%d,%d,%b,%b,%d,%d,%d,%d,%d,%d,%d,%d", run.name, run.input, run.size, run.seed,
+                run.finished, run.sorted, run.cycles, run.reads, run.comparisons, run.swaps, run.writes, run.wallNanos, run.p50, run.p99));
+        }
+    }
+
+    static void writeJson(List<Run> runs, PrintWriter out) {
+        out.println("[");
+        for (int i = 0; i < runs.size(); i++) {
+            Run run = runs.get(i);
+            out.print(String.format(Locale.ROOT, "  {\"algorithm\": \"%s\", \"input\": \"%s\", \"size\": %d, \"seed\": %d, \"finished\": %b, "
+                + "\"sorted\": %b, \"cycles\": %d, \"reads\": %d, \"comparisons\": %d, \"swaps\": %d, \"writes\": %d, \"wallNanos\": %d, "
+                + "\"p50CycleNanos\": %d, \"p99CycleNanos\": %d}", run.name, run.input.replace("\\", "\\\\"), run.size, run.seed, run.finished, run.sorted,
+                run.cycles, run.reads, run.comparisons, run.swaps, run.writes, run.wallNanos, run.p50, run.p99));
+            out.println(i < runs.size() - 1 ? "," : "");
+        }
+        out.println("]");
+    }
+
+    private static long[] parseList(String list) {
+        String[] parts = list.split(",");
+        long[] values = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Long.parseLong(parts[i].trim());
+        }
+        return values;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 1) {
+            System.out.println("Usage: BatchRunner [report file] [sizes, comma separated] [seeds, comma separated] [max cycles] [inputs, comma separated]");
+            System.exit(0);
+        }
+        File report = new File(args[0]);
+        long[] sizes = parseList(args.length > 1 ? args[1] : DEFAULT_SIZES);
+        long[] seeds = parseList(args.length > 2 ? args[2] : DEFAULT_SEEDS);
+        long maxCycles = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        String[] inputs = (args.length > 4 ? args[4] : DEFAULT_INPUTS).split(",");
+
+        List<Run> runs = new ArrayList<>();
+        boolean failed = false;
+        for (Class<? extends Sort> sortClass : findSorts()) {
+            for (String input : inputs) {
+                for (long size : sizes) {
+                    for (long seed : seeds) {
+                        Run run = run(sortClass, input.trim(), (int)size, seed, maxCycles);
+                        runs.add(run);
+                        System.out.println(String.format(Locale.ROOT, "%-14s %-13s n=%-8d seed=%-4d %s %12d cycles %10.1f ms  p50 %6d ns  p99 %6d ns",
+                            run.name, run.input, run.size, run.seed, !run.finished ? "UNFINISHED" : run.sorted ? "sorted    " : "NOT SORTED",
+                            run.cycles, run.wallNanos / 1e6, run.p50, run.p99));
+                        if (!run.drawn) {
+                            System.out.println("BAD FRAME - " + run.name + " n=" + run.size + " draws bars taller than its values");
+                        }
+                        failed |= (run.finished && !run.sorted) || !run.drawn;
+                    }
+                }
+            }
+        }
+
+        try (PrintWriter out = new PrintWriter(report, "UTF-8")) {
+            if (report.getName().endsWith(".json")) {
+                writeJson(runs, out);
+            } else {
+                writeCsv(runs, out);
+            }
+        }
+        // A sort that claims to be done with an unsorted array or draws it wrong is a bug, fail loudly for scripts
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
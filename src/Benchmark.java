@@ -0,0 +1,524 @@
+/****************************************************
+ Measures how fast the visualizations step and paint, so that performance
+ changes show up as numbers instead of as a feeling about the animation.
+
+ Each measurement is warmed up first, then timed over several iterations
+ and reported as a mean with its standard deviation. Allocation per
+ operation is read from the allocation counter of the benchmark thread.
+
+ The parallel benchmark times whole parallel sorts with 1, 2, 4... workers
+ up to the number of processors and reports the speedup over one worker.
+
+ The generator benchmark compares sorts written as state machines with the
+ same algorithms written on a GeneratorSort, reporting what the handoff to
+ the generator's thread adds to each cycle(), and then keeps thousands of
+ generator sorts paused at once to show their memory and stepping cost.
+
+ The render benchmark compares the two Sort.Renderers, Java2D fillRect and
+ spans written straight into the pixels, both for a frame after each
+ cycle() (only the changed columns are drawn) and for drawing every column
+ again, as after a color change or the first frame.
+
+ The values benchmark times the sorts that take values of any type (see
+ SortValues) over the same values as ints, longs, doubles and keyed
+ records, reporting each against ints, which Sort handles as it always
+ has with plain int[] code.
+
+ The batch benchmark runs sorts and searches to completion, once by
+ calling cycle() until it reports them complete and once in cycle(int)
+ batches, which they step through in a loop of their own.
+
+ The cycle benchmark starts the sorts from random, sorted and reversed
+ values unless other inputs (SortDistributions or SortDataset files) are
+ given. Every input is drawn with the same seed, so runs can be compared.
+
+ Usage from Visualizer/
+     java -cp bin/ Benchmark [cycle|paint|render|values|batch|parallel|generator|all] [sizes, comma separated] [inputs, comma separated]
+****************************************************/
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+public class Benchmark {
+    private static final int WARMUP_ITERATIONS = 3, MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 200000000L;
+
+    // Sorts benchmarked by default
+    static final String[] SORTS = {"BubbleSort", "InsertionSort", "QuickSort", "SelectionSort"};
+    static final int[] SIZES = {50, 1000, 100000};
+    // Sizes of the final scaled image in the paint benchmark
+    static final int[] RESOLUTIONS = {500, 1000, 2000};
+    // Parallel sorts timed in the scaling benchmark, with the steps each worker takes per cycle
+    static final String[] PARALLEL_SORTS = {"ParallelQuickSort", "ParallelMergeSort"};
+    static final int PARALLEL_SIZE = 1000000, PARALLEL_STEPS = 4096;
+    // State machine sorts and the same algorithms on a GeneratorSort
+    static final String[][] GENERATOR_PAIRS = {{"BubbleSort", "GeneratorBubbleSort"}, {"QuickSort", "GeneratorQuickSort"}};
+    static final int PAUSED_GENERATORS = 2000, PAUSED_SIZE = 50;
+    // Sort and sizes the renderers are compared with
+    static final String RENDER_SORT = "QuickSort";
+    static final int[] RENDER_SIZES = {50, 10000, 1000000};
+    // Sorts timed over each type of SortValues
+    static final String[] VALUES_SORTS = {"BubbleSort", "QuickSort", "SelectionSort"};
+    // Visualizations run to completion one cycle() at a time and in batches, and the size of the batches.
+    // Sorts are given a size of values, searches a grid of that many cells across.
+    static final String[] BATCH_VISUALIZATIONS = {"BubbleSort", "InsertionSort", "QuickSort", "SelectionSort", "BreadthFirstSearch", "AStarSearch"};
+    static final int[] BATCH_SIZES = {50, 1000};
+    static final int BATCH_STEPS = 1024;
+
+    // Inputs of the cycle benchmark by default, and the seed every input is drawn with
+    static final String DEFAULT_INPUTS = "random,sorted,reversed";
+    static final long SEED = 1;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    // Written with every result so the JIT can not drop the work being measured
+    static volatile boolean sink;
+
+    /***
+        One timed piece of work. Implementations do their setup before timing starts
+        in reset(), and run() is timed as a single operation.
+    ***/
+    interface Operation {
+        void reset() throws Exception;
+        void run();
+    }
+
+    /***
+        Tells an iteration the operation has to be reset, for example when a sort has finished.
+    ***/
+    interface Done {
+        boolean done();
+    }
+
+    /***
+        Result of a measurement, operations per second and bytes allocated per operation.
+    ***/
+    static class Result {
+        final double opsPerSecond, error, bytesPerOp;
+
+        Result(double opsPerSecond, double error, double bytesPerOp) {
+            this.opsPerSecond = opsPerSecond;
+            this.error = error;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    /***
+        Runs warmup and measurement iterations of an operation. Each iteration calls run() until
+        the iteration time has passed, calling reset() first and whenever done() reports true.
+    ***/
+    static Result measure(Operation operation, Done done) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(operation, done, null);
+        }
+        double[] rates = new double[MEASURE_ITERATIONS];
+        long[] allocation = new long[2];
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            rates[i] = iteration(operation, done, allocation);
+        }
+        double mean = 0;
+        for (double rate : rates) {
+            mean += rate / rates.length;
+        }
+        double variance = 0;
+        for (double rate : rates) {
+            variance += (rate - mean) * (rate - mean) / Math.max(1, rates.length - 1);
+        }
+        return new Result(mean, Math.sqrt(variance), allocation[1] == 0 ? 0 : (double)allocation[0] / allocation[1]);
+    }
+
+    // Returns operations per second, adding bytes allocated and operations run to allocation if it is not null.
+    // Whenever done() reports true the operation is reset, leaving the time and memory that takes out.
+    private static double iteration(Operation operation, Done done, long[] allocation) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        operation.reset();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long deadline = start + ITERATION_NANOS;
+        long ops = 0, excludedNanos = 0, excludedBytes = 0;
+        // Check the clock every so often rather than after every operation
+        do {
+            for (int i = 0; i < 64 && !done.done(); i++) {
+                operation.run();
+                ops++;
+            }
+            if (done.done()) {
+                long resetStart = System.nanoTime();
+                long resetBytes = THREADS.getThreadAllocatedBytes(threadId);
+                operation.reset();
+                excludedBytes += THREADS.getThreadAllocatedBytes(threadId) - resetBytes;
+                excludedNanos += System.nanoTime() - resetStart;
+            }
+        } while (System.nanoTime() - deadline < 0);
+        long elapsed = System.nanoTime() - start - excludedNanos;
+        if (allocation != null) {
+            allocation[0] += THREADS.getThreadAllocatedBytes(threadId) - bytesBefore - excludedBytes;
+            allocation[1] += ops;
+        }
+        return ops * 1e9 / elapsed;
+    }
+
+    /***
+        Creates a sort of the given class over values of the given input and size.
+    ***/
+    static Sort createSort(String name, int size, SortInput input) throws Exception {
+        int[] values = input.values(size, SEED);
+        return (Sort)Class.forName(name).getConstructor(int[].class).newInstance((Object)values);
+    }
+
+    /***
+        The values of an input as the given type: the ints themselves, widened to longs or doubles,
+        or the keys of records whose payloads are the indicies they start at.
+    ***/
+    static SortValues sortValues(SortValues.Type type, int size, SortInput input) {
+        int[] ints = input.values(size, SEED);
+        long[] longs = new long[size];
+        double[] doubles = new double[size];
+        for (int i = 0; i < size; i++) {
+            longs[i] = ints[i];
+            doubles[i] = ints[i];
+        }
+        switch (type) {
+            case LONG:
+                return SortValues.of(longs);
+            case DOUBLE:
+                return SortValues.of(doubles);
+            case KEYED:
+                return SortValues.keyed(longs);
+            default:
+                return SortValues.of(ints);
+        }
+    }
+
+    /***
+        Steps per second of cycle(), starting over with a fresh sort once one finishes.
+    ***/
+    static Result cycle(String name, int size, SortInput input) throws Exception {
+        return cycle(name, size, input, SortValues.Type.INT);
+    }
+
+    /***
+        Steps per second of cycle() over values of the given type. Ints are passed to the int[]
+        constructor every sort has, other types to the SortValues one.
+    ***/
+    static Result cycle(final String name, final int size, final SortInput input, final SortValues.Type type) throws Exception {
+        final Sort[] sort = new Sort[1];
+        final boolean[] finished = new boolean[1];
+        return measure(new Operation() {
+            public void reset() throws Exception {
+                // A generator sort dropped half way has to be told so its thread can end
+                if (sort[0] instanceof AutoCloseable) {
+                    ((AutoCloseable)sort[0]).close();
+                }
+                if (type == SortValues.Type.INT) {
+                    sort[0] = createSort(name, size, input);
+                } else {
+                    sort[0] = (Sort)Class.forName(name).getConstructor(SortValues.class).newInstance(sortValues(type, size, input));
+                }
+                finished[0] = false;
+            }
+
+            public void run() {
+                finished[0] = sort[0].cycle();
+            }
+        }, new Done() {
+            public boolean done() {
+                return finished[0];
+            }
+        });
+    }
+
+    /***
+        Frames per second of one cycle() followed by paintVisualization and scaling the canvas
+        to a resolution x resolution image, as Visualizer.paint does for the window.
+    ***/
+    static Result paint(final String name, final int size, final int resolution) throws Exception {
+        final Sort[] sort = new Sort[1];
+        final boolean[] finished = new boolean[1];
+        final BufferedImage canvas = new BufferedImage(Visualizer.DRAW_WIDTH, Visualizer.DRAW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        final BufferedImage screen = new BufferedImage(resolution, resolution, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D canvasGraphics = canvas.createGraphics();
+        final Graphics2D screenGraphics = screen.createGraphics();
+        return measure(new Operation() {
+            public void reset() throws Exception {
+                sort[0] = createSort(name, size, SortDistribution.RANDOM);
+                finished[0] = false;
+                // The first paint draws everything, leave that out of the measurement
+                sort[0].paintVisualization(canvasGraphics);
+            }
+
+            public void run() {
+                finished[0] = sort[0].cycle();
+                sort[0].paintVisualization(canvasGraphics);
+                sink = screenGraphics.drawImage(canvas, 0, 0, resolution, resolution, null);
+            }
+        }, new Done() {
+            public boolean done() {
+                return finished[0];
+            }
+        });
+    }
+
+    /***
+        Frames per second of the given renderer drawing a sort onto its canvas, after a cycle()
+        each when redraw is false, or drawing every column again each time when it is true.
+    ***/
+    static Result render(final String name, final int size, final Sort.Renderer renderer, final boolean redraw) throws Exception {
+        final Sort[] sort = new Sort[1];
+        final boolean[] finished = new boolean[1];
+        final BufferedImage frame = new BufferedImage(Visualizer.DRAW_WIDTH, Visualizer.DRAW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D frameGraphics = frame.createGraphics();
+        return measure(new Operation() {
+            public void reset() throws Exception {
+                sort[0] = createSort(name, size, SortDistribution.RANDOM);
+                sort[0].setRenderer(renderer);
+                finished[0] = false;
+                sort[0].paintVisualization(frameGraphics);
+            }
+
+            public void run() {
+                if (redraw) {
+                    sort[0].setBackgroundColor(Color.BLACK);
+                } else {
+                    finished[0] = sort[0].cycle();
+                }
+                sort[0].paintVisualization(frameGraphics);
+                sink = finished[0];
+            }
+        }, new Done() {
+            public boolean done() {
+                return finished[0];
+            }
+        });
+    }
+
+    /***
+        Whole runs per second of a visualization, stepped by calling cycle() until it completes,
+        or by cycle(BATCH_STEPS) calls when batched is true.
+    ***/
+    static Result batch(final String name, final int size, final boolean batched) throws Exception {
+        final Visualizer[] visualization = new Visualizer[1];
+        final boolean[] finished = new boolean[1];
+        return measure(new Operation() {
+            public void reset() throws Exception {
+                Class<?> type = Class.forName(name);
+                if (GraphSearch.class.isAssignableFrom(type)) {
+                    visualization[0] = (Visualizer)type.getConstructor(int.class, int.class).newInstance(size, size);
+                } else {
+                    visualization[0] = createSort(name, size, SortDistribution.RANDOM);
+                }
+                finished[0] = false;
+            }
+
+            public void run() {
+                if (batched) {
+                    while (visualization[0].cycle(BATCH_STEPS) == BATCH_STEPS) {
+                    }
+                } else {
+                    while (!visualization[0].cycle()) {
+                    }
+                }
+                finished[0] = true;
+            }
+        }, new Done() {
+            public boolean done() {
+                return finished[0];
+            }
+        });
+    }
+
+    /***
+        Whole sorts per second of a parallel sort with the given number of workers.
+    ***/
+    static Result parallel(final String name, final int size, final int workers) throws Exception {
+        final Sort[] sort = new Sort[1];
+        final boolean[] finished = new boolean[1];
+        return measure(new Operation() {
+            public void reset() throws Exception {
+                sort[0] = (Sort)Class.forName(name).getConstructor(int[].class, int.class, int.class)
+                    .newInstance(Sort.shuffledRange(size, SEED), workers, PARALLEL_STEPS);
+                finished[0] = false;
+            }
+
+            public void run() {
+                while (!sort[0].cycle()) {
+                }
+                finished[0] = true;
+                sink = sort[0].array[0] == 0;
+            }
+        }, new Done() {
+            public boolean done() {
+                return finished[0];
+            }
+        });
+    }
+
+    /***
+        Pauses the given number of generator sorts after their first cycle, then prints the heap
+        they hold and how fast they can be cycled in turn.
+    ***/
+    static void paused(int count, int size) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        GeneratorSort[] sorts = new GeneratorSort[count];
+        for (int i = 0; i < count; i++) {
+            sorts[i] = new GeneratorQuickSort(Sort.shuffledRange(size, SEED + i));
+            sorts[i].cycle();
+        }
+        System.gc();
+        long held = runtime.totalMemory() - runtime.freeMemory() - before;
+
+        long cycles = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < MEASURE_ITERATIONS * ITERATION_NANOS) {
+            for (GeneratorSort sort : sorts) {
+                sink = sort.cycle();
+            }
+            cycles += count;
+        }
+        double rate = cycles * 1e9 / (System.nanoTime() - start);
+        for (GeneratorSort sort : sorts) {
+            sort.close();
+        }
+        System.out.println(String.format(Locale.ROOT, "%-6s %-14s %-22s %14.1f ops/s %12.0f B heap per sort (n=%d, %s threads)",
+            "paused", "GeneratorQuickSort", count + " sorts", rate, (double)held / count, size,
+            Generator.usesVirtualThreads() ? "virtual" : "platform"));
+    }
+
+    // 1, 2, 4... workers up to the number of processors, which is always included
+    static int[] workerCounts() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int count = 32 - Integer.numberOfLeadingZeros(processors);
+        boolean powerOfTwo = Integer.bitCount(processors) == 1;
+        int[] counts = new int[powerOfTwo ? count : count + 1];
+        for (int i = 0; i < count; i++) {
+            counts[i] = 1 << i;
+        }
+        counts[counts.length - 1] = processors;
+        return counts;
+    }
+
+    private static void print(String benchmark, String name, String parameters, Result result) {
+        System.out.println(String.format(Locale.ROOT, "%-6s %-14s %-22s %14.1f +- %12.1f ops/s %12.1f B/op",
+            benchmark, name, parameters, result.opsPerSecond, result.error, result.bytesPerOp));
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        // Every search in the batch benchmark runs on the same grid
+        if (System.getProperty("search.seed") == null) {
+            System.setProperty("search.seed", Long.toString(SEED));
+        }
+        String mode = args.length > 0 ? args[0] : "all";
+        int[] sizes = SIZES;
+        if (args.length > 1) {
+            String[] parts = args[1].split(",");
+            sizes = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                sizes[i] = Integer.parseInt(parts[i].trim());
+            }
+        }
+        String[] inputs = (args.length > 2 ? args[2] : DEFAULT_INPUTS).split(",");
+
+        if (mode.equals("cycle") || mode.equals("all")) {
+            for (String name : SORTS) {
+                for (int size : sizes) {
+                    for (String input : inputs) {
+                        print("cycle", name, "n=" + size + " " + input.trim(), cycle(name, size, SortInput.forName(input)));
+                    }
+                }
+            }
+        }
+        if (mode.equals("paint") || mode.equals("all")) {
+            for (String name : SORTS) {
+                for (int size : sizes) {
+                    for (int resolution : RESOLUTIONS) {
+                        print("paint", name, "n=" + size + " " + resolution + "px", paint(name, size, resolution));
+                    }
+                }
+            }
+        }
+        if (mode.equals("render") || mode.equals("all")) {
+            int[] renderSizes = args.length > 1 ? sizes : RENDER_SIZES;
+            for (int size : renderSizes) {
+                for (boolean redraw : new boolean[] {false, true}) {
+                    Result java2d = null;
+                    for (Sort.Renderer renderer : Sort.Renderer.values()) {
+                        Result result = render(RENDER_SORT, size, renderer, redraw);
+                        print("render", RENDER_SORT, "n=" + size + " " + (redraw ? "redraw " : "frame ") + renderer.name().toLowerCase(Locale.ROOT), result);
+                        if (renderer == Sort.Renderer.JAVA2D) {
+                            java2d = result;
+                        } else {
+                            System.out.println(String.format(Locale.ROOT, "%-6s %-14s %-22s %14.2fx the frames per second of java2d",
+                                "", "", "", result.opsPerSecond / java2d.opsPerSecond));
+                        }
+                    }
+                }
+            }
+        }
+        if (mode.equals("values") || mode.equals("all")) {
+            for (String name : VALUES_SORTS) {
+                for (int size : sizes) {
+                    Result ints = null;
+                    for (SortValues.Type type : SortValues.Type.values()) {
+                        Result result = cycle(name, size, SortDistribution.RANDOM, type);
+                        print("values", name, "n=" + size + " " + type.name().toLowerCase(Locale.ROOT), result);
+                        if (type == SortValues.Type.INT) {
+                            ints = result;
+                        } else {
+                            System.out.println(String.format(Locale.ROOT, "%-6s %-14s %-22s %14.2fx the steps per second of int",
+                                "", "", "", result.opsPerSecond / ints.opsPerSecond));
+                        }
+                    }
+                }
+            }
+        }
+        if (mode.equals("batch") || mode.equals("all")) {
+            int[] batchSizes = args.length > 1 ? sizes : BATCH_SIZES;
+            for (String name : BATCH_VISUALIZATIONS) {
+                for (int size : batchSizes) {
+                    Result single = batch(name, size, false);
+                    Result batched = batch(name, size, true);
+                    print("run", name, "n=" + size + " cycle()", single);
+                    print("run", name, "n=" + size + " cycle(" + BATCH_STEPS + ")", batched);
+                    System.out.println(String.format(Locale.ROOT, "%-6s %-14s %-22s %14.2fx the runs per second of cycle()",
+                        "", "", "", batched.opsPerSecond / single.opsPerSecond));
+                }
+            }
+        }
+        if (mode.equals("generator") || mode.equals("all")) {
+            for (String[] pair : GENERATOR_PAIRS) {
+                for (int size : sizes) {
+                    Result machine = cycle(pair[0], size, SortDistribution.RANDOM);
+                    Result generator = cycle(pair[1], size, SortDistribution.RANDOM);
+                    print("cycle", pair[0], "n=" + size, machine);
+                    print("cycle", pair[1], "n=" + size, generator);
+                    System.out.println(String.format(Locale.ROOT, "%-6s %-14s %-22s %14.1f ns handoff per cycle",
+                        "", "", "", 1e9 / generator.opsPerSecond - 1e9 / machine.opsPerSecond));
+                }
+            }
+            paused(PAUSED_GENERATORS, PAUSED_SIZE);
+        }
+        if (mode.equals("parallel") || mode.equals("all")) {
+            int[] parallelSizes = args.length > 1 ? sizes : new int[] {PARALLEL_SIZE};
+            for (String name : PARALLEL_SORTS) {
+                for (int size : parallelSizes) {
+                    double single = 0;
+                    for (int workers : workerCounts()) {
+                        Result result = parallel(name, size, workers);
+                        if (workers == 1) {
+                            single = result.opsPerSecond;
+                        }
+                        print("sort", name, "n=" + size + " workers=" + workers, result);
+                        System.out.println(String.format(Locale.ROOT, "%-6s %-14s %-22s %14.2fx speedup over one worker",
+                            "", "", "", result.opsPerSecond / single));
+                    }
+                }
+            }
+        }
+    }
+}
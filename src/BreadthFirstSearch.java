@@ -0,0 +1,44 @@
+/***
+ Breadth first search on a GraphSearch grid. The frontier is an IntQueue,
+ so cells are expanded in rings of the same number of steps from the start
+ and the path found is one of the fewest steps.
+ ***/
+
+public class BreadthFirstSearch extends GraphSearch {
+
+    private final IntQueue frontier;
+
+    public BreadthFirstSearch() {
+        this(DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    // Creates a breadth first search over a new grid of the given size
+    public BreadthFirstSearch(int width, int height) {
+        super(width, height, false);
+        frontier = new IntQueue(width * height);
+    }
+
+    protected void begin(int start) {
+        frontier.add(start);
+    }
+
+    protected int next() {
+        return frontier.isEmpty() ? -1 : frontier.remove();
+    }
+
+    // Every cell is reached first by one of the fewest steps, later ways there are no shorter
+    protected void relax(int from, int to, int weight) {
+        if (!isDiscovered(to)) {
+            discover(to, from);
+            frontier.add(to);
+        }
+    }
+
+    protected void clearFrontier() {
+        frontier.clear();
+    }
+
+    public String getTitle() {
+        return "Breadth First Search";
+    }
+}
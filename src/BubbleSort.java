@@ -4,10 +4,42 @@
 
 public class BubbleSort extends Sort {
 
+    public BubbleSort() {
+        super();
+    }
+
+    // Creates a bubble sort over the given values
+    public BubbleSort(int[] values) {
+        this(SortValues.of(values));
+    }
+
+    // Creates a bubble sort over values of any type, see SortValues
+    public BubbleSort(SortValues values) {
+        super(values);
+    }
+
     // Makes one swap per cycle
     public boolean cycle() {
+        return step();
+    }
+
+    // Makes up to maxSteps swaps in one loop, see Visualizer.cycle(int)
+    public int cycle(int maxSteps) {
+        int steps = 0;
+        while (steps < maxSteps && !step()) {
+            steps++;
+        }
+        batchDelayNanos = steps * getDelayNanos();
+        return steps;
+    }
+
+    private boolean step() {
+        // Nothing to compare, already sorted
+        if (array.length < 2) {
+            return true;
+        }
         boolean sorted = false;
-        while (array[sortIndex] < array[sortIndex+1]) {
+        while (compare(sortIndex, sortIndex+1) <= 0) {
             sortIndex++;
             if (sortIndex == array.length - 1) {
                 sortIndex = 0;
@@ -18,12 +50,20 @@ public class BubbleSort extends Sort {
                 }
             }
         }
-        int temp = array[sortIndex];
-        array[sortIndex] = array[sortIndex+1];
-        array[sortIndex+1] = temp;
+        swap(sortIndex, sortIndex+1);
         return false;
     }
 
+    // Everything but sortIndex is kept by Sort
+    public boolean reset() {
+        resetValues();
+        return true;
+    }
+
+    protected int[] saveIndices() {
+        return new int[0];
+    }
+
     public String getTitle() {
         return "Bubble Sort";
     }
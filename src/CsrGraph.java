@@ -0,0 +1,148 @@
+/****************************************************
+ Directed graph in compressed sparse row form: three int arrays and no
+ object per node or edge, so graphs of millions of nodes fit in a few
+ bytes per edge and walking the edges of a node is a scan of one array.
+
+ The edges leaving node n are the indicies from offsets[n] (inclusive) to
+ offsets[n + 1] (exclusive) of targets, which holds the node each edge
+ leads to, and of weights, which holds its cost. An unweighted graph has
+ no weights array and every edge costs 1.
+
+ A grid graph can be built again over the same arrays (see setGrid), so a
+ search shown over and over on new grids allocates nothing.
+****************************************************/
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class CsrGraph {
+    private final int nodes;
+    private final int[] offsets;
+    private int[] targets, weights;
+
+    private CsrGraph(int nodes, int edgeCapacity, boolean weighted) {
+        this.nodes = nodes;
+        offsets = new int[nodes + 1];
+        targets = new int[edgeCapacity];
+        weights = weighted ? new int[edgeCapacity] : null;
+    }
+
+    /***
+        Builds a graph of the given number of nodes from count edges, edge i leading from from[i]
+        to to[i] at a cost of weights[i], or 1 when weights is null.
+    ***/
+    public static CsrGraph fromEdges(int nodes, int[] from, int[] to, int[] weights, int count) {
+        CsrGraph graph = new CsrGraph(nodes, count, weights != null);
+        // Count the edges of each node, turn the counts into starting offsets, then place each edge
+        for (int i = 0; i < count; i++) {
+            graph.offsets[from[i] + 1]++;
+        }
+        for (int n = 0; n < nodes; n++) {
+            graph.offsets[n + 1] += graph.offsets[n];
+        }
+        int[] next = Arrays.copyOf(graph.offsets, nodes);
+        for (int i = 0; i < count; i++) {
+            int edge = next[from[i]]++;
+            graph.targets[edge] = to[i];
+            if (weights != null) {
+                graph.weights[edge] = weights[i];
+            }
+        }
+        return graph;
+    }
+
+    /***
+        Builds the graph of a grid of width x height cells, see setGrid.
+    ***/
+    public static CsrGraph grid(int width, int height, BitSet walls, byte[] costs) {
+        CsrGraph graph = new CsrGraph(width * height, 4 * width * height, costs != null);
+        graph.setGrid(width, height, walls, costs);
+        return graph;
+    }
+
+    /***
+        Rebuilds this graph as a grid of width x height cells, numbered row by row, with the same
+        number of nodes it was created with. Each open cell has an edge to each open cell beside,
+        above and below it, in the order right, down, left, up. Cells in walls have no edges in or
+        out. Entering a cell costs costs[cell] when the graph is weighted.
+    ***/
+    public void setGrid(int width, int height, BitSet walls, byte[] costs) {
+        if (width * height != nodes) {
+            throw new IllegalArgumentException("A grid of " + width + "x" + height + " does not have " + nodes + " cells");
+        }
+        if ((costs != null) != (weights != null)) {
+            throw new IllegalArgumentException(weights != null ? "Weighted grids need costs" : "Graph was built without weights");
+        }
+        int edge = 0;
+        for (int cell = 0; cell < nodes; cell++) {
+            offsets[cell] = edge;
+            if (walls.get(cell)) {
+                continue;
+            }
+            int x = cell % width;
+            if (x + 1 < width) {
+                edge = addGridEdge(edge, cell + 1, walls, costs);
+            }
+            if (cell + width < nodes) {
+                edge = addGridEdge(edge, cell + width, walls, costs);
+            }
+            if (x > 0) {
+                edge = addGridEdge(edge, cell - 1, walls, costs);
+            }
+            if (cell >= width) {
+                edge = addGridEdge(edge, cell - width, walls, costs);
+            }
+        }
+        offsets[nodes] = edge;
+    }
+
+    private int addGridEdge(int edge, int target, BitSet walls, byte[] costs) {
+        if (walls.get(target)) {
+            return edge;
+        }
+        targets[edge] = target;
+        if (costs != null) {
+            weights[edge] = costs[target];
+        }
+        return edge + 1;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public int getEdges() {
+        return offsets[nodes];
+    }
+
+    /***
+        First edge leaving a node.
+    ***/
+    public int edgeStart(int node) {
+        return offsets[node];
+    }
+
+    /***
+        Edge just past the last one leaving a node.
+    ***/
+    public int edgeEnd(int node) {
+        return offsets[node + 1];
+    }
+
+    /***
+        Node an edge leads to.
+    ***/
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    /***
+        Cost of taking an edge.
+    ***/
+    public int weight(int edge) {
+        return weights == null ? 1 : weights[edge];
+    }
+
+    public boolean isWeighted() {
+        return weights != null;
+    }
+}
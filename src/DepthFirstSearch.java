@@ -0,0 +1,44 @@
+/***
+ Depth first search on a GraphSearch grid. The frontier is an IntStack, so
+ the search follows one way as far as it goes before backing up. A cell is
+ pushed again each time it is seen and reached from the cell that saw it
+ last, which is the one it is popped for first.
+ ***/
+
+public class DepthFirstSearch extends GraphSearch {
+
+    private final IntStack frontier;
+
+    public DepthFirstSearch() {
+        this(DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    // Creates a depth first search over a new grid of the given size
+    public DepthFirstSearch(int width, int height) {
+        super(width, height, false);
+        // Each edge pushes at most once, and a reset grid can have up to the 4 edges per cell
+        // CsrGraph makes room for, so this is all the stack can ever hold
+        frontier = new IntStack(4 * width * height + 1);
+    }
+
+    protected void begin(int start) {
+        frontier.push(start);
+    }
+
+    protected int next() {
+        return frontier.isEmpty() ? -1 : frontier.pop();
+    }
+
+    protected void relax(int from, int to, int weight) {
+        discover(to, from);
+        frontier.push(to);
+    }
+
+    protected void clearFrontier() {
+        frontier.clear();
+    }
+
+    public String getTitle() {
+        return "Depth First Search";
+    }
+}
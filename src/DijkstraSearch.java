@@ -0,0 +1,59 @@
+/***
+ Dijkstra's algorithm on a weighted GraphSearch grid. The frontier is an
+ IntHeap ordered by the cheapest cost found so far to reach each cell, so
+ cells are expanded in order of cost and the path found is a cheapest one.
+ ***/
+import java.util.Arrays;
+
+public class DijkstraSearch extends GraphSearch {
+
+    private final IntHeap frontier;
+    // Cheapest cost found so far to reach each cell from the start
+    private final int[] distance;
+
+    public DijkstraSearch() {
+        this(DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    // Creates a search over a new weighted grid of the given size
+    public DijkstraSearch(int width, int height) {
+        super(width, height, true);
+        frontier = new IntHeap(width * height);
+        distance = new int[width * height];
+    }
+
+    /**
+     * Order cells are taken off the frontier in, lowest first, for a cell reached at the given
+     * cost.
+     */
+    protected long priority(int cell, int cost) {
+        return cost;
+    }
+
+    protected void begin(int start) {
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        distance[start] = 0;
+        frontier.offer(start, priority(start, 0));
+    }
+
+    protected int next() {
+        return frontier.isEmpty() ? -1 : frontier.poll();
+    }
+
+    protected void relax(int from, int to, int weight) {
+        int cost = distance[from] + weight;
+        if (cost < distance[to]) {
+            distance[to] = cost;
+            discover(to, from);
+            frontier.offer(to, priority(to, cost));
+        }
+    }
+
+    protected void clearFrontier() {
+        frontier.clear();
+    }
+
+    public String getTitle() {
+        return "Dijkstra's Algorithm";
+    }
+}
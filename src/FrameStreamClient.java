@@ -0,0 +1,197 @@
+/****************************************************
+ Views the frames served by a FrameStreamServer.
+
+ Each message is inflated and its tiles are drawn over the frame kept from
+ the messages before it, then answered so the server sends the next.
+ Shown in a window by default, or, given a number of seconds, read without
+ a screen for that long to measure the bandwidth and decoding CPU of a
+ viewer. A delay per frame makes it a slow viewer, to see the server skip
+ frames for it instead of falling behind.
+
+ Usage from Visualizer/
+     java -cp bin/ FrameStreamClient [host] [port] [seconds to measure, 0 to show] [delay per frame in ms]
+****************************************************/
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+
+public class FrameStreamClient extends JPanel implements AutoCloseable {
+    private static final int TILE_SIZE = FrameStreamServer.TILE_SIZE;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream answers;
+    private final Inflater inflater = new Inflater();
+    private final BufferedImage image = new BufferedImage(FrameStreamServer.WIDTH, FrameStreamServer.HEIGHT, BufferedImage.TYPE_INT_RGB);
+    private final int[] row = new int[TILE_SIZE];
+    private byte[] message = new byte[1 << 16];
+    private final byte[] tiles = new byte[FrameStreamServer.TILES_ACROSS * FrameStreamServer.TILES_DOWN * (2 + 3 * TILE_SIZE * TILE_SIZE)];
+    private int frame;
+    private long bytes, frames, keyframes;
+
+    /***
+        Connects to the server at the given host and port.
+    ***/
+    public FrameStreamClient(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        answers = socket.getOutputStream();
+    }
+
+    /***
+        Reads the next message and draws its tiles. Returns false once the server has closed the stream.
+    ***/
+    public boolean readFrame() throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        if (length < FrameStreamServer.HEADER_BYTES) {
+            throw new IOException("Message of " + length + " bytes is shorter than its header");
+        }
+        if (message.length < length) {
+            message = new byte[Math.max(length, 2 * message.length)];
+        }
+        in.readFully(message, 0, length);
+        bytes += 4 + length;
+
+        int width = readShort(5), height = readShort(7), tileSize = readShort(9), count = readShort(11);
+        if (width != image.getWidth() || height != image.getHeight() || tileSize != TILE_SIZE) {
+            throw new IOException("Unexpected frame of " + width + "x" + height + " in tiles of " + tileSize);
+        }
+        int inflated = 0;
+        inflater.reset();
+        inflater.setInput(message, FrameStreamServer.HEADER_BYTES, length - FrameStreamServer.HEADER_BYTES);
+        try {
+            while (!inflater.finished() && inflated < tiles.length) {
+                int read = inflater.inflate(tiles, inflated, tiles.length - inflated);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Message " + frame + " ends before its tiles");
+                }
+                inflated += read;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Message could not be inflated", e);
+        }
+
+        synchronized (image) {
+            int at = 0;
+            for (int t = 0; t < count; t++) {
+                int tile = (tiles[at] & 0xFF) << 8 | (tiles[at + 1] & 0xFF);
+                at += 2;
+                int left = tile % FrameStreamServer.TILES_ACROSS * TILE_SIZE, top = tile / FrameStreamServer.TILES_ACROSS * TILE_SIZE;
+                int tileWidth = Math.min(width, left + TILE_SIZE) - left, bottom = Math.min(height, top + TILE_SIZE);
+                if (at + 3 * tileWidth * (bottom - top) > inflated) {
+                    throw new IOException("Message " + frame + " ends in the middle of tile " + tile);
+                }
+                for (int y = top; y < bottom; y++) {
+                    for (int x = 0; x < tileWidth; x++) {
+                        row[x] = (tiles[at] & 0xFF) << 16 | (tiles[at + 1] & 0xFF) << 8 | (tiles[at + 2] & 0xFF);
+                        at += 3;
+                    }
+                    image.getRaster().setDataElements(left, y, tileWidth, 1, row);
+                }
+            }
+        }
+        frame = message[0] << 24 | (message[1] & 0xFF) << 16 | (message[2] & 0xFF) << 8 | (message[3] & 0xFF);
+        frames++;
+        if (message[4] != 0) {
+            keyframes++;
+        }
+        answers.write(1);
+        repaint();
+        return true;
+    }
+
+    private int readShort(int at) {
+        return (message[at] & 0xFF) << 8 | (message[at + 1] & 0xFF);
+    }
+
+    /***
+        The frame as last drawn. Lock it while reading it, readFrame draws into it.
+    ***/
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /***
+        Number of the last frame received, as counted by the server.
+    ***/
+    public int getFrame() {
+        return frame;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getKeyframes() {
+        return keyframes;
+    }
+
+    @Override
+    public void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        synchronized (image) {
+            g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        inflater.end();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : FrameStreamServer.DEFAULT_PORT;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        long delay = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        if (seconds > 0) {
+            System.setProperty("java.awt.headless", "true");
+        }
+
+        try (FrameStreamClient client = new FrameStreamClient(host, port)) {
+            if (seconds <= 0) {
+                JFrame window = new JFrame("Visualizations from " + host + ":" + port);
+                window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+                window.setSize(MainFrame.BOARD_WIDTH, MainFrame.BOARD_HEIGHT);
+                window.setLocationRelativeTo(null);
+                window.add(client);
+                window.setVisible(true);
+            }
+            long start = System.nanoTime();
+            long cpuStart = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+            while ((seconds <= 0 || System.nanoTime() - start < seconds * 1000000000L) && client.readFrame()) {
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+            }
+            if (seconds > 0) {
+                double elapsed = (System.nanoTime() - start) / 1e9;
+                long cpu = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() - cpuStart;
+                System.out.println(String.format(Locale.ROOT, "%9.1f kB/s %7.1f frames/s %4d keyframes %7.1f ms CPU/s decoding, %d frames in %.1f s",
+                    client.getBytes() / 1024.0 / elapsed, client.getFrames() / elapsed, client.getKeyframes(),
+                    cpu / 1e6 / elapsed, client.getFrames(), elapsed));
+            }
+        }
+    }
+}
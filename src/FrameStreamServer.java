@@ -0,0 +1,451 @@
+/****************************************************
+ Serves the frames of visualizations to remote viewers over TCP, so a
+ headless machine can feed displays elsewhere (see FrameStreamClient).
+
+ Frames are split into square tiles. A message to a viewer carries only
+ the tiles that changed since the last message it was sent, deflated, and
+ every tile (a keyframe) when it connects and every KEYFRAME_INTERVAL
+ frames after that.
+
+ Nothing waits on a viewer:
+  - The thread running cycle() copies each published frame into one of
+    three capture buffers, exchanged with the encoder the way Visualizer
+    exchanges frames with the EDT, so when the encoder falls behind only
+    the newest capture is kept.
+  - The encoder compares each capture against the previous one, tile by
+    tile, and only builds a message for a viewer once its last one has
+    been written. A slow viewer skips frames and gets the changes of all
+    of them together in its next message.
+  - Each viewer has a thread of its own that writes its messages. Viewers
+    answer each message with a byte once they have drawn it, and no more
+    than MAX_IN_FLIGHT messages are sent ahead of those answers, so a slow
+    viewer holds up its own thread rather than filling socket buffers
+    with frames it would only see seconds later.
+
+ Every STATS_SECONDS the bandwidth, frame rate and CPU time of each viewer
+ are printed.
+
+ A message is an int length followed by that many bytes: int frame, byte
+ keyframe, short width, short height, short tile size, short tile count,
+ then the deflated tiles, each a short tile index followed by its pixels
+ as RGB bytes, row by row. Numbers are big-endian. The viewer answers
+ each message with a single byte.
+
+ From the command line the server listens on every address of the machine,
+ so viewers elsewhere can connect. -Dstream.bind=[address] listens on one
+ address only, such as 127.0.0.1 to keep the stream on this machine.
+
+ Usage from Visualizer/
+     java -cp bin/ FrameStreamServer [port] [Classes to run]
+****************************************************/
+import java.awt.image.BufferedImage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Deflater;
+
+public class FrameStreamServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 7070;
+    static final int WIDTH = Visualizer.DRAW_WIDTH, HEIGHT = Visualizer.DRAW_HEIGHT, TILE_SIZE = 40;
+    static final int TILES_ACROSS = (WIDTH + TILE_SIZE - 1) / TILE_SIZE, TILES_DOWN = (HEIGHT + TILE_SIZE - 1) / TILE_SIZE;
+    // Bytes of a message before its deflated tiles, not counting the length in front of it
+    static final int HEADER_BYTES = 13;
+    // Frames between two keyframes to the same viewer
+    private static final int KEYFRAME_INTERVAL = 300;
+    // Messages a viewer may be sent before it has answered the ones before them
+    private static final int MAX_IN_FLIGHT = 2;
+    private static final long STATS_SECONDS = 5, NANOS_PER_SECOND = 1000000000L;
+    private static final int CAPTURE_INDEX = 3, CAPTURE_FRESH = 4;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptor, encoder;
+    private volatile boolean closed;
+
+    // Captured frames, exchanged between the cycle thread and the encoder like the frames of Visualizer
+    private final int[][] captures = new int[3][WIDTH * HEIGHT];
+    private final AtomicInteger latestCapture = new AtomicInteger(1);
+    // Only used by the cycle thread
+    private int capturing = 0;
+
+    // The rest is only used by the encoder: the last frame it compared, which frame each tile last
+    // changed in, and the buffers messages are built in
+    private final int[] reference = new int[WIDTH * HEIGHT];
+    private final int[] tileChanged = new int[TILES_ACROSS * TILES_DOWN];
+    private int frame;
+    private final byte[] tiles = new byte[TILES_ACROSS * TILES_DOWN * (2 + 3 * TILE_SIZE * TILE_SIZE)];
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] message = new byte[1 << 16];
+    private int messageLength;
+    // The message last built, reused for other viewers that were sent the same frames so far
+    private int messageFrame = -1, messageSince;
+    private long lastStats;
+
+    // Viewers are replaced as a whole when one joins or leaves, the encoder reads them without locking
+    private volatile Viewer[] viewers = new Viewer[0];
+
+    /***
+        A connected viewer and the thread writing its messages.
+    ***/
+    private final class Viewer implements Runnable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream answers;
+        private final Thread sender;
+        private byte[] pending = new byte[1 << 16];
+        private int pendingLength;
+        // Set by the encoder when pending holds a message, cleared by the sender once it is written
+        private volatile boolean sending;
+        private volatile boolean disconnected;
+        // Frame of the last message built for this viewer and of its last keyframe, -1 before the first
+        private int sentFrame = -1, keyFrame = -1;
+        // Totals, and the totals at the last stats line
+        private volatile long bytes;
+        private long frames, keyframes, skipped, encodeNanos;
+        private long lastBytes, lastFrames, lastKeyframes, lastSkipped, lastCpuNanos;
+
+        private Viewer(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            answers = socket.getInputStream();
+            sender = new Thread(this, "stream-" + socket.getRemoteSocketAddress());
+            sender.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            int inFlight = 0;
+            try {
+                while (!closed) {
+                    while (!sending && !closed) {
+                        LockSupport.park(this);
+                    }
+                    if (closed) {
+                        break;
+                    }
+                    out.write(pending, 0, pendingLength);
+                    out.flush();
+                    bytes += pendingLength;
+                    inFlight++;
+                    // Wait for the viewer to draw earlier messages before taking another
+                    while (inFlight >= MAX_IN_FLIGHT || (inFlight > 0 && answers.available() > 0)) {
+                        if (answers.read() < 0) {
+                            throw new EOFException();
+                        }
+                        inFlight--;
+                    }
+                    sending = false;
+                    // There may be changes waiting for this viewer
+                    LockSupport.unpark(encoder);
+                }
+            } catch (IOException e) {
+                // The viewer went away
+            } finally {
+                disconnected = true;
+                LockSupport.unpark(encoder);
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Already gone
+                }
+            }
+        }
+    }
+
+    /***
+        Starts serving on the given port of the loopback address.
+    ***/
+    public FrameStreamServer(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /***
+        Starts serving on the given address and port, or on every address when address is null.
+    ***/
+    public FrameStreamServer(InetAddress address, int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, address);
+        acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "stream-accept");
+        encoder = new Thread(new Runnable() {
+            public void run() {
+                encode();
+            }
+        }, "stream-encode");
+        acceptor.setDaemon(true);
+        encoder.setDaemon(true);
+        encoder.start();
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /***
+        Streams the frame the visualization published last. Call on the thread running its
+        cycle(), after publishFrame, such as from the frame request of a VisualizationScheduler.
+        Only copies the frame, so it never waits for the encoder or a viewer.
+    ***/
+    public void offer(Visualizer visualization) {
+        BufferedImage published = visualization.getPublishedFrame();
+        if (published == null || closed) {
+            return;
+        }
+        published.getRaster().getDataElements(0, 0, WIDTH, HEIGHT, captures[capturing]);
+        capturing = latestCapture.getAndSet(capturing | CAPTURE_FRESH) & CAPTURE_INDEX;
+        LockSupport.unpark(encoder);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        LockSupport.unpark(encoder);
+        for (Viewer viewer : viewers) {
+            viewer.socket.close();
+            LockSupport.unpark(viewer.sender);
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Viewer viewer = new Viewer(serverSocket.accept());
+                synchronized (this) {
+                    Viewer[] joined = Arrays.copyOf(viewers, viewers.length + 1);
+                    joined[viewers.length] = viewer;
+                    viewers = joined;
+                }
+                viewer.sender.start();
+                LockSupport.unpark(encoder);
+            } catch (IOException e) {
+                if (!closed) {
+                    System.out.println("Error - could not accept a viewer: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Compares each new capture and sends to every viewer that is ready, until closed
+    private void encode() {
+        int encoding = 2;
+        lastStats = System.nanoTime();
+        while (!closed) {
+            if ((latestCapture.get() & CAPTURE_FRESH) != 0) {
+                encoding = latestCapture.getAndSet(encoding) & CAPTURE_INDEX;
+                frame++;
+                compare(captures[encoding]);
+            }
+            send();
+            long now = System.nanoTime();
+            if (now - lastStats >= STATS_SECONDS * NANOS_PER_SECOND) {
+                printStats(now - lastStats);
+                lastStats = now;
+            }
+            // Woken by a new capture, a viewer that joined, or a sender that is free again
+            if ((latestCapture.get() & CAPTURE_FRESH) == 0) {
+                LockSupport.parkNanos(this, STATS_SECONDS * NANOS_PER_SECOND);
+            }
+        }
+        deflater.end();
+    }
+
+    // Copies the tiles of capture that differ from reference, noting the frame they changed in
+    private void compare(int[] capture) {
+        for (int tile = 0; tile < tileChanged.length; tile++) {
+            int left = tile % TILES_ACROSS * TILE_SIZE, top = tile / TILES_ACROSS * TILE_SIZE;
+            int right = Math.min(WIDTH, left + TILE_SIZE), bottom = Math.min(HEIGHT, top + TILE_SIZE);
+            int y = top;
+            while (y < bottom && Arrays.mismatch(capture, y * WIDTH + left, y * WIDTH + right,
+                    reference, y * WIDTH + left, y * WIDTH + right) < 0) {
+                y++;
+            }
+            if (y < bottom) {
+                for (; y < bottom; y++) {
+                    System.arraycopy(capture, y * WIDTH + left, reference, y * WIDTH + left, right - left);
+                }
+                tileChanged[tile] = frame;
+            }
+        }
+    }
+
+    // Gives every viewer that is not busy writing the changes it has not been sent yet
+    private void send() {
+        Viewer[] current = viewers;
+        for (Viewer viewer : current) {
+            if (viewer.disconnected) {
+                leave(viewer);
+                continue;
+            }
+            if (viewer.sending || viewer.sentFrame == frame) {
+                continue;
+            }
+            boolean keyframe = viewer.keyFrame < 0 || frame - viewer.keyFrame >= KEYFRAME_INTERVAL;
+            int since = keyframe ? -1 : viewer.sentFrame;
+            if (!keyframe && !changedSince(since)) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            if (messageFrame != frame || messageSince != since) {
+                buildMessage(since, keyframe);
+            }
+            if (viewer.pending.length < messageLength) {
+                viewer.pending = new byte[Math.max(messageLength, 2 * viewer.pending.length)];
+            }
+            System.arraycopy(message, 0, viewer.pending, 0, messageLength);
+            viewer.pendingLength = messageLength;
+            viewer.encodeNanos += System.nanoTime() - start;
+
+            if (viewer.sentFrame >= 0) {
+                viewer.skipped += frame - viewer.sentFrame - 1;
+            }
+            viewer.sentFrame = frame;
+            viewer.frames++;
+            if (keyframe) {
+                viewer.keyFrame = frame;
+                viewer.keyframes++;
+            }
+            viewer.sending = true;
+            LockSupport.unpark(viewer.sender);
+        }
+    }
+
+    private boolean changedSince(int since) {
+        for (int changed : tileChanged) {
+            if (changed > since) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Builds the message with every tile changed after frame since into message
+    private void buildMessage(int since, boolean keyframe) {
+        int length = 0, count = 0;
+        for (int tile = 0; tile < tileChanged.length; tile++) {
+            if (tileChanged[tile] <= since) {
+                continue;
+            }
+            count++;
+            tiles[length++] = (byte)(tile >> 8);
+            tiles[length++] = (byte)tile;
+            int left = tile % TILES_ACROSS * TILE_SIZE, top = tile / TILES_ACROSS * TILE_SIZE;
+            int right = Math.min(WIDTH, left + TILE_SIZE), bottom = Math.min(HEIGHT, top + TILE_SIZE);
+            for (int y = top; y < bottom; y++) {
+                for (int i = y * WIDTH + left; i < y * WIDTH + right; i++) {
+                    int rgb = reference[i];
+                    tiles[length++] = (byte)(rgb >> 16);
+                    tiles[length++] = (byte)(rgb >> 8);
+                    tiles[length++] = (byte)rgb;
+                }
+            }
+        }
+
+        int header = 4 + HEADER_BYTES;
+        messageLength = header;
+        deflater.reset();
+        deflater.setInput(tiles, 0, length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            if (messageLength == message.length) {
+                message = Arrays.copyOf(message, 2 * message.length);
+            }
+            messageLength += deflater.deflate(message, messageLength, message.length - messageLength);
+        }
+        writeInt(0, messageLength - 4);
+        writeInt(4, frame);
+        message[8] = (byte)(keyframe ? 1 : 0);
+        writeShort(9, WIDTH);
+        writeShort(11, HEIGHT);
+        writeShort(13, TILE_SIZE);
+        writeShort(15, count);
+        messageFrame = frame;
+        messageSince = since;
+    }
+
+    private void writeInt(int at, int value) {
+        writeShort(at, value >> 16);
+        writeShort(at + 2, value);
+    }
+
+    private void writeShort(int at, int value) {
+        message[at] = (byte)(value >> 8);
+        message[at + 1] = (byte)value;
+    }
+
+    private void leave(Viewer viewer) {
+        synchronized (this) {
+            Viewer[] left = new Viewer[viewers.length - 1];
+            int i = 0;
+            for (Viewer other : viewers) {
+                if (other != viewer) {
+                    left[i++] = other;
+                }
+            }
+            viewers = left;
+        }
+        System.out.println(String.format(Locale.ROOT, "%s left after %d frames, %d kB", viewer.socket.getRemoteSocketAddress(),
+            viewer.frames, viewer.bytes / 1024));
+    }
+
+    // Bandwidth, frames and CPU of each viewer since the last stats line. CPU is the time spent
+    // building its messages plus the time of its sender thread.
+    private void printStats(long elapsed) {
+        double seconds = elapsed / 1e9;
+        for (Viewer viewer : viewers) {
+            long cpu = viewer.encodeNanos + Math.max(0, THREADS.getThreadCpuTime(viewer.sender.getId()));
+            long bytes = viewer.bytes;
+            System.out.println(String.format(Locale.ROOT, "%-22s %9.1f kB/s %7.1f frames/s %7.1f skipped/s %4d keyframes %7.1f ms CPU/s",
+                viewer.socket.getRemoteSocketAddress(), (bytes - viewer.lastBytes) / 1024.0 / seconds,
+                (viewer.frames - viewer.lastFrames) / seconds, (viewer.skipped - viewer.lastSkipped) / seconds,
+                viewer.keyframes - viewer.lastKeyframes, (cpu - viewer.lastCpuNanos) / 1e6 / seconds));
+            viewer.lastBytes = bytes;
+            viewer.lastFrames = viewer.frames;
+            viewer.lastSkipped = viewer.skipped;
+            viewer.lastKeyframes = viewer.keyframes;
+            viewer.lastCpuNanos = cpu;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        String bind = System.getProperty("stream.bind");
+        FrameStreamServer server = new FrameStreamServer(bind == null ? null : InetAddress.getByName(bind), port);
+        System.out.println("Streaming on " + server.serverSocket.getLocalSocketAddress());
+
+        // Like MainFrame, shows the named visualizations (or every one found) one after another forever,
+        // resetting each to show it again
+        VisualizationRegistry registry = args.length > 1 ? VisualizationRegistry.of(Arrays.copyOfRange(args, 1, args.length))
+            : VisualizationRegistry.discover();
+        VisualizationPool pool = new VisualizationPool(registry);
+        while (true) {
+            pool.release();
+            final Visualizer visualization = pool.next();
+            if (visualization == null) {
+                System.out.println("ERROR - no visualizations found. Please ensure they have been compiled.");
+                System.exit(0);
+            }
+            new VisualizationScheduler(new Visualizer[] {visualization}, new Runnable() {
+                public void run() {
+                    server.offer(visualization);
+                }
+            }).run();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/****************************************************
+ Runs a piece of ordinary code one step at a time, so an algorithm can be
+ written as plain loops and recursion that call yieldStep() instead of as
+ a state machine that remembers where it was between cycle() calls.
+
+ The code runs on a thread of its own that only ever runs while the
+ caller of step() waits, so the two never run at the same time and
+ everything one writes is visible to the other after each handoff. The
+ handoff is a volatile flag and park/unpark, which allocate nothing.
+
+ Once the code returns its thread waits to be restart()ed, which runs the
+ code again from the top without starting a new thread. close() ends the
+ thread, whether the code has returned or is paused part way through.
+
+ A virtual thread is used when the JVM has them (Java 21 and later), which
+ makes a paused generator cost a few hundred bytes of heap. Older JVMs
+ get a daemon platform thread with a small stack instead.
+****************************************************/
+import java.lang.reflect.Method;
+import java.util.concurrent.locks.LockSupport;
+
+public class Generator implements AutoCloseable {
+    // Stack of platform threads, recursion in the generated code has to fit in it
+    private static final long PLATFORM_STACK_SIZE = 512 * 1024;
+    // Busy waiting for the other side only pays off when it runs on another processor
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 200 : 0;
+    // Thread.ofVirtual() and Thread.Builder.unstarted(Runnable), when the JVM has them
+    private static final Object VIRTUAL_BUILDER;
+    private static final Method UNSTARTED;
+
+    static {
+        Object builder = null;
+        Method unstarted = null;
+        try {
+            builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // No virtual threads (or only as a disabled preview), use platform threads
+            builder = null;
+            unstarted = null;
+        }
+        VIRTUAL_BUILDER = builder;
+        UNSTARTED = unstarted;
+    }
+
+    /**
+     * Thrown inside the generated code to unwind it when the generator is closed early.
+     * An Error so catch (Exception e) in the generated code does not stop it.
+     */
+    private static class Closed extends Error {
+        Closed() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Runnable body;
+    private final Thread thread;
+    // True while the generated code may run, false while the caller of step() runs
+    private volatile boolean generatorTurn;
+    // unwinding is set while restart() throws the code in progress out of its yieldStep()
+    private volatile boolean finished, closed, unwinding;
+    private volatile Thread caller;
+    private Throwable failure;
+
+    /***
+        Prepares body to be run one step at a time. Nothing of it runs before the first step().
+    ***/
+    public Generator(Runnable body, String name) {
+        this.body = body;
+        Runnable run = new Runnable() {
+            public void run() {
+                runBody();
+            }
+        };
+        Thread created = null;
+        if (VIRTUAL_BUILDER != null) {
+            try {
+                created = (Thread)UNSTARTED.invoke(VIRTUAL_BUILDER, run);
+                created.setName(name);
+            } catch (ReflectiveOperationException e) {
+                created = null;
+            }
+        }
+        if (created == null) {
+            created = new Thread(null, run, name, PLATFORM_STACK_SIZE);
+            created.setDaemon(true);
+        }
+        thread = created;
+        thread.start();
+    }
+
+    /***
+        Whether generators run on virtual threads in this JVM.
+    ***/
+    public static boolean usesVirtualThreads() {
+        return VIRTUAL_BUILDER != null;
+    }
+
+    /***
+        Runs the generated code until its next yieldStep() or until it returns.
+        Returns
+            False: The code is paused and has more steps
+            True: The code has returned
+    ***/
+    public boolean step() {
+        if (finished) {
+            return true;
+        }
+        if (closed) {
+            throw new IllegalStateException("Generator has been closed");
+        }
+        caller = Thread.currentThread();
+        generatorTurn = true;
+        LockSupport.unpark(thread);
+        awaitTurn(false);
+        if (failure != null) {
+            throw new IllegalStateException("Generated code failed", failure);
+        }
+        return finished;
+    }
+
+    /***
+        Pauses the generated code until the next step(). Only to be called by the generated code.
+    ***/
+    public void yieldStep() {
+        if (Thread.currentThread() != thread) {
+            throw new IllegalStateException("yieldStep() called outside of the generated code");
+        }
+        generatorTurn = false;
+        LockSupport.unpark(caller);
+        awaitTurn(true);
+        if (closed || unwinding) {
+            throw new Closed();
+        }
+    }
+
+    /***
+        Starts the generated code over from the top on the same thread, with nothing of it run
+        before the next step(). Code that has not returned yet is unwound first. Must not be called
+        during a step().
+    ***/
+    public void restart() {
+        if (closed) {
+            throw new IllegalStateException("Generator has been closed");
+        }
+        if (!finished) {
+            unwinding = true;
+            caller = Thread.currentThread();
+            generatorTurn = true;
+            LockSupport.unpark(thread);
+            awaitTurn(false);
+            unwinding = false;
+        }
+        failure = null;
+        finished = false;
+    }
+
+    /***
+        Stops generated code that has not returned yet and lets its thread end. Must not be called
+        during a step().
+    ***/
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        generatorTurn = true;
+        LockSupport.unpark(thread);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    // Runs body once per restart, each run starting with the first step()
+    private void runBody() {
+        while (true) {
+            awaitTurn(true);
+            if (closed) {
+                return;
+            }
+            try {
+                if (!unwinding) {
+                    body.run();
+                }
+            } catch (Closed e) {
+                // Closed or restarted early, nobody is waiting for the rest
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                finished = true;
+                generatorTurn = false;
+                LockSupport.unpark(caller);
+            }
+            if (closed) {
+                // Closed while paused, waiting for another turn would keep the thread forever
+                return;
+            }
+        }
+    }
+
+    // Waits until it is the generated code's turn (turn true) or the caller's turn (turn false)
+    private void awaitTurn(boolean turn) {
+        for (int spins = 0; generatorTurn != turn; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+}
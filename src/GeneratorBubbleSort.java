@@ -0,0 +1,51 @@
+/***
+ Bubble sort written as plain loops on a GeneratorSort, one comparison per cycle.
+ ***/
+import java.awt.Color;
+
+public class GeneratorBubbleSort extends GeneratorSort {
+
+    public static final Color SORTED = Color.decode("#FFFF33"), COMPARED = Color.decode("#003366"),
+        UNSORTED = Color.decode("#BA9242");
+
+    public GeneratorBubbleSort() {
+        this(randomValues());
+    }
+
+    // Creates a bubble sort over the given values
+    public GeneratorBubbleSort(int[] values) {
+        super(values);
+        fillMarkers(0, array.length, UNSORTED);
+    }
+
+    public boolean reset() {
+        resetValues();
+        fillMarkers(0, array.length, UNSORTED);
+        return true;
+    }
+
+    protected void sort() {
+        for (int end = array.length - 1; end > 0; end--) {
+            boolean swapped = false;
+            for (int i = 0; i < end; i++) {
+                setMarkerColor(i, COMPARED);
+                if (compare(i, i + 1) > 0) {
+                    swap(i, i + 1);
+                    swapped = true;
+                }
+                yieldStep();
+                setMarkerColor(i, UNSORTED);
+            }
+            // The largest value left has bubbled up to the end
+            setMarkerColor(end, SORTED);
+            if (!swapped) {
+                break;
+            }
+        }
+        fillMarkers(0, array.length, SORTED);
+    }
+
+    public String getTitle() {
+        return "Bubble Sort (generator)";
+    }
+}
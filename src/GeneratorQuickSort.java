@@ -0,0 +1,74 @@
+/***
+ Quicksort written as plain recursion on a GeneratorSort. Partitioning takes
+ one comparison per cycle, the pending ranges are simply the call stack.
+ ***/
+import java.awt.Color;
+
+public class GeneratorQuickSort extends GeneratorSort {
+
+    public static final Color RANGE = Color.decode("#003366"), PIVOT = Color.decode("#999900"),
+            DEFAULT_COLOR = Color.decode("#BA9242"), SELECTED = Color.decode("#FFFF33");
+
+    public GeneratorQuickSort() {
+        this(randomValues());
+    }
+
+    // Creates a quicksort over the given values
+    public GeneratorQuickSort(int[] values) {
+        super(values);
+        fillMarkers(0, array.length, DEFAULT_COLOR);
+    }
+
+    public boolean reset() {
+        resetValues();
+        fillMarkers(0, array.length, DEFAULT_COLOR);
+        return true;
+    }
+
+    protected void sort() {
+        quicksort(0, array.length);
+    }
+
+    // Sorts from low (inclusive) to high (exclusive). Recursing only into the smaller side
+    // keeps the stack depth logarithmic whatever the input.
+    private void quicksort(int low, int high) {
+        while (high - low > 1) {
+            int pivot = partition(low, high);
+            if (pivot - low < high - pivot) {
+                quicksort(low, pivot);
+                low = pivot + 1;
+            } else {
+                quicksort(pivot + 1, high);
+                high = pivot;
+            }
+        }
+    }
+
+    // Partitions around the middle value and returns where it ends up
+    private int partition(int low, int high) {
+        int last = high - 1;
+        swap((low + high) >>> 1, last);
+        fillMarkers(low, last, RANGE);
+        setMarkerColor(last, PIVOT);
+        yieldStep();
+
+        int store = low;
+        for (int i = low; i < last; i++) {
+            setMarkerColor(i, SELECTED);
+            if (compare(i, last) < 0) {
+                swap(i, store);
+                store++;
+            }
+            yieldStep();
+            setMarkerColor(i, RANGE);
+        }
+        swap(store, last);
+        fillMarkers(low, high, DEFAULT_COLOR);
+        yieldStep();
+        return store;
+    }
+
+    public String getTitle() {
+        return "Quicksort (generator)";
+    }
+}
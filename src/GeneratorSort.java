@@ -0,0 +1,56 @@
+/****************************************************
+ Base of sorts written as ordinary code. Instead of keeping its place in
+ fields between cycle() calls, a subclass writes the whole algorithm in
+ sort() with plain loops and recursion and calls yieldStep() wherever a
+ cycle should end. Each cycle() runs sort() up to its next yieldStep() on
+ a Generator, and the sort is done once sort() returns.
+
+ A reset sort runs sort() again from the top on the same thread.
+
+ Call close() on a sort that is dropped before it finishes so the thread
+ it is paused on can end.
+****************************************************/
+public abstract class GeneratorSort extends Sort implements AutoCloseable {
+    private final Generator generator;
+
+    /**
+     * Creates a sort over the given starting values, sort() starts with the first cycle.
+     */
+    protected GeneratorSort(int[] values) {
+        super(values);
+        generator = new Generator(new Runnable() {
+            public void run() {
+                sort();
+            }
+        }, getClass().getName());
+    }
+
+    /**
+     * Sorts array using the get/set/swap/compare helpers, calling yieldStep() after each step.
+     */
+    protected abstract void sort();
+
+    /**
+     * Ends the current cycle, sort() carries on from here in the next one.
+     */
+    protected void yieldStep() {
+        generator.yieldStep();
+    }
+
+    /**
+     * Also unwinds sort() if it is still running, so the next cycle starts it over.
+     */
+    @Override
+    protected void resetValues() {
+        generator.restart();
+        super.resetValues();
+    }
+
+    public boolean cycle() {
+        return generator.step();
+    }
+
+    public void close() {
+        generator.close();
+    }
+}
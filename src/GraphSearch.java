@@ -0,0 +1,347 @@
+/****************************************************
+ Base of searches over a grid of cells, drawn as a picture of the grid
+ with one pixel per cell.
+
+ The grid is a CsrGraph, and what the search knows of each cell is kept in
+ BitSets (discovered, expanded) and an int array (the cell it was reached
+ from), so grids of millions of cells cost a few bytes per cell and
+ stepping allocates nothing. Subclasses keep their frontier in a primitive
+ IntQueue, IntStack or IntHeap.
+
+ Each cycle expands a number of cells that grows with the grid, so any
+ search takes about the same time to watch. Every change to a cell writes
+ its pixel in a PixelCanvas right away, so drawing a frame only scales that
+ picture onto the canvas however many cells there are.
+
+ Grids are set with -Dsearch.size=[cells across], and -Dsearch.seed=[seed]
+ makes them the same every run. Walls are scattered at random. Weighted
+ searches also pay for entering each cell, 1 on the flat half of the grid
+ and up to 9 on hills that vary smoothly across it, drawn lighter the more
+ a cell costs.
+****************************************************/
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+public abstract class GraphSearch extends Visualizer {
+    /**
+     * Cells across and down of a search created without arguments, set with -Dsearch.size=[cells]
+     */
+    public static final int DEFAULT_SIZE = Integer.getInteger("search.size", 100);
+
+    public static final Color WALL = Color.decode("#A9A9A9"), FRONTIER = Color.decode("#4363D8"),
+        EXPANDED = Color.decode("#BA9242"), PATH = Color.decode("#FFFF33"), ENDPOINT = Color.decode("#E6194B");
+
+    // Share of cells that are walls
+    private static final double WALL_DENSITY = 0.25;
+    // Highest cost of entering a cell, and the width in cells over which costs change
+    private static final int MAX_COST = 9, COST_BLOCK = 16;
+    // Share of the blended costs that are flattened to the lowest cost
+    private static final double FLAT_SHARE = 0.5;
+    // Cells across the open squares in the corners of the start and the goal
+    private static final int OPEN_CORNER = 3;
+    // Number of cycles a search of the whole grid takes about
+    private static final int TARGET_CYCLES = 2000;
+    private static final int DELAY = 10, FINISHED_DELAY = 2000;
+    // Area of the canvas the grid is drawn in
+    private static final int GRID_LEFT = 100, GRID_TOP = 130, GRID_SIZE = 780, TITLE_BASELINE = 100, STATS_BASELINE = 960;
+    // Seed set with -Dsearch.seed, null when every grid should differ
+    private static final Long SEED = Long.getLong("search.seed");
+
+    protected final int width, height;
+    protected final CsrGraph graph;
+    protected final int start, goal;
+    private final BitSet walls, discovered, expanded;
+    private final int[] parent;
+    // Cost of entering each cell, null for unweighted searches
+    private final byte[] costs;
+    // Random cost at every COST_BLOCK cells, which the costs in between are blended from
+    private final double[] coarseCosts;
+    private final int coarseWidth;
+    private final PixelCanvas cells;
+    private final int[] pixels;
+    private final int stepsPerCycle;
+    private final Random random = new Random();
+    private long resets;
+    private boolean started, finished;
+    private int expandedCount, pathLength;
+    private long pathCost;
+    private final Font titleFont = new Font("Helvetica", Font.BOLD, 60), statsFont = new Font("Helvetica", Font.PLAIN, 28);
+
+    /**
+     * Creates a search over a new grid of the given size, with costs for entering cells when
+     * weighted is true. Searches run from the top left cell to the bottom right one.
+     */
+    protected GraphSearch(int width, int height, boolean weighted) {
+        this.width = width;
+        this.height = height;
+        int cellCount = width * height;
+        start = 0;
+        goal = cellCount - 1;
+        walls = new BitSet(cellCount);
+        discovered = new BitSet(cellCount);
+        expanded = new BitSet(cellCount);
+        parent = new int[cellCount];
+        costs = weighted ? new byte[cellCount] : null;
+        coarseWidth = width / COST_BLOCK + 2;
+        coarseCosts = weighted ? new double[coarseWidth * (height / COST_BLOCK + 2)] : null;
+        cells = new PixelCanvas(width, height);
+        pixels = cells.getPixels();
+        stepsPerCycle = Math.max(1, cellCount / TARGET_CYCLES);
+        if (SEED != null) {
+            random.setSeed(SEED);
+        }
+        fillGrid();
+        graph = CsrGraph.grid(width, height, walls, costs);
+        paintCells();
+    }
+
+    /**
+     * Puts the start on the frontier, before the first cell is expanded.
+     */
+    protected abstract void begin(int start);
+
+    /**
+     * Takes the next cell to expand off the frontier, or returns -1 when it is empty. Cells
+     * already expanded are skipped, so a cell may be on the frontier more than once.
+     */
+    protected abstract int next();
+
+    /**
+     * Looks at the edge from an expanded cell to a cell that has not been expanded yet,
+     * calling discover and adding the cell to the frontier if it is worth going to.
+     */
+    protected abstract void relax(int from, int to, int weight);
+
+    /**
+     * Empties the frontier for a new search.
+     */
+    protected abstract void clearFrontier();
+
+    public abstract String getTitle();
+
+    public int getDelay() {
+        return finished ? FINISHED_DELAY : DELAY;
+    }
+
+    /**
+     * Notes that cell is reached from the expanded cell from, replacing the way it was reached
+     * before, and draws it as part of the frontier.
+     */
+    protected void discover(int cell, int from) {
+        parent[cell] = from;
+        if (!discovered.get(cell)) {
+            discovered.set(cell);
+            paintCell(cell);
+        }
+    }
+
+    protected boolean isDiscovered(int cell) {
+        return discovered.get(cell);
+    }
+
+    public boolean cycle() {
+        return cycle(1) == 0;
+    }
+
+    /**
+     * Runs up to maxSteps cycles as one run of expansions, stepsPerCycle of them per cycle,
+     * so a batch costs no more per cell than a single cycle does.
+     */
+    public int cycle(int maxSteps) {
+        batchDelayNanos = 0;
+        if (finished) {
+            return 0;
+        }
+        int steps = 0;
+        if (!started && maxSteps > 0) {
+            started = true;
+            discover(start, start);
+            begin(start);
+            steps++;
+        }
+        long expansions = (long)(maxSteps - steps) * stepsPerCycle;
+        for (long expansion = 0; expansion < expansions; expansion++) {
+            int cell = next();
+            if (cell < 0) {
+                return finish(false, steps + (int)(expansion / stepsPerCycle) + 1);
+            }
+            if (expanded.get(cell)) {
+                continue;
+            }
+            expanded.set(cell);
+            expandedCount++;
+            paintCell(cell);
+            if (cell == goal) {
+                return finish(true, steps + (int)(expansion / stepsPerCycle) + 1);
+            }
+            for (int edge = graph.edgeStart(cell), end = graph.edgeEnd(cell); edge < end; edge++) {
+                int target = graph.target(edge);
+                if (!expanded.get(target)) {
+                    relax(cell, target, graph.weight(edge));
+                }
+            }
+        }
+        batchDelayNanos = maxSteps * (long)DELAY * 1000000L;
+        return maxSteps;
+    }
+
+    // Draws the path that was found, if any. The cycle that finished is the last of the given
+    // steps and is not counted, the caller holds the picture for its getDelay().
+    private int finish(boolean found, int steps) {
+        finished = true;
+        if (found) {
+            for (int cell = goal; cell != start; cell = parent[cell]) {
+                pathLength++;
+                pathCost += costs == null ? 1 : costs[cell];
+                if (cell != goal) {
+                    pixels[cell] = PATH.getRGB();
+                }
+            }
+        }
+        batchDelayNanos = (steps - 1) * (long)DELAY * 1000000L;
+        return steps - 1;
+    }
+
+    public int getExpanded() {
+        return expandedCount;
+    }
+
+    /**
+     * Number of steps in the path found, 0 until it is found or when there is none.
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * Sum of the costs of entering each cell of the path found after the start.
+     */
+    public long getPathCost() {
+        return pathCost;
+    }
+
+    /**
+     * Whether the cell is a wall.
+     */
+    public boolean isWall(int cell) {
+        return walls.get(cell);
+    }
+
+    /**
+     * Cost of entering the cell, 1 in unweighted searches.
+     */
+    public int getCost(int cell) {
+        return costs == null ? 1 : costs[cell];
+    }
+
+    /**
+     * Starts over on a new grid drawn into the same arrays.
+     */
+    public boolean reset() {
+        resets++;
+        if (SEED != null) {
+            random.setSeed(SEED + resets);
+        }
+        fillGrid();
+        graph.setGrid(width, height, walls, costs);
+        discovered.clear();
+        expanded.clear();
+        clearFrontier();
+        started = false;
+        finished = false;
+        expandedCount = 0;
+        pathLength = 0;
+        pathCost = 0;
+        paintCells();
+        return true;
+    }
+
+    // Scatters the walls and blends the costs of the cells
+    private void fillGrid() {
+        walls.clear();
+        for (int cell = 0; cell < width * height; cell++) {
+            if (random.nextDouble() < WALL_DENSITY) {
+                walls.set(cell);
+            }
+        }
+        // Keep a corner of open cells around the start and goal so they are rarely shut in
+        for (int y = 0; y < Math.min(OPEN_CORNER, height); y++) {
+            walls.clear(y * width, y * width + Math.min(OPEN_CORNER, width));
+            walls.clear((height - 1 - y) * width + Math.max(0, width - OPEN_CORNER), (height - y) * width);
+        }
+        if (costs == null) {
+            return;
+        }
+        for (int i = 0; i < coarseCosts.length; i++) {
+            coarseCosts[i] = random.nextDouble();
+        }
+        for (int y = 0; y < height; y++) {
+            int cy = y / COST_BLOCK;
+            double fy = (double)(y % COST_BLOCK) / COST_BLOCK;
+            for (int x = 0; x < width; x++) {
+                int cx = x / COST_BLOCK;
+                double fx = (double)(x % COST_BLOCK) / COST_BLOCK;
+                int corner = cy * coarseWidth + cx;
+                double top = coarseCosts[corner] * (1 - fx) + coarseCosts[corner + 1] * fx;
+                double bottom = coarseCosts[corner + coarseWidth] * (1 - fx) + coarseCosts[corner + coarseWidth + 1] * fx;
+                double blend = top * (1 - fy) + bottom * fy;
+                // Most of the grid is cheap, with hills of higher costs
+                double hill = Math.max(0, blend - FLAT_SHARE) / (1 - FLAT_SHARE);
+                costs[y * width + x] = (byte)Math.min(MAX_COST, 1 + (int)(hill * MAX_COST));
+            }
+        }
+    }
+
+    private void paintCells() {
+        for (int cell = 0; cell < pixels.length; cell++) {
+            paintCell(cell);
+        }
+    }
+
+    private void paintCell(int cell) {
+        int rgb;
+        if (cell == start || cell == goal) {
+            rgb = ENDPOINT.getRGB();
+        } else if (walls.get(cell)) {
+            rgb = WALL.getRGB();
+        } else if (expanded.get(cell)) {
+            rgb = EXPANDED.getRGB();
+        } else if (discovered.get(cell)) {
+            rgb = FRONTIER.getRGB();
+        } else {
+            // Open cells are dark gray, lighter the more they cost to enter
+            int level = costs == null ? 0x20 : 0x10 + costs[cell] * 0x0C;
+            rgb = level * 0x010101;
+        }
+        pixels[cell] = rgb;
+    }
+
+    /**
+     * Draws the grid, scaled to fit, under the title and above the counts of the search.
+     */
+    public void paintVisualization(Graphics2D g2d) {
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, Visualizer.DRAW_WIDTH, Visualizer.DRAW_HEIGHT);
+        g2d.setColor(Color.WHITE);
+        g2d.setFont(titleFont);
+        FontMetrics metrics = g2d.getFontMetrics();
+        String title = getTitle();
+        g2d.drawString(title, (Visualizer.DRAW_WIDTH - metrics.stringWidth(title)) / 2, TITLE_BASELINE);
+
+        int side = Math.max(width, height);
+        int drawWidth = (int)((long)GRID_SIZE * width / side), drawHeight = (int)((long)GRID_SIZE * height / side);
+        g2d.drawImage(cells.getImage(), GRID_LEFT + (GRID_SIZE - drawWidth) / 2, GRID_TOP, drawWidth, drawHeight, null);
+
+        g2d.setFont(statsFont);
+        String stats = expandedCount + " of " + width * height + " cells expanded";
+        if (finished) {
+            stats += pathLength > 0 ? ", path of " + pathLength + " cells costing " + pathCost : ", no path";
+        }
+        g2d.drawString(stats, GRID_LEFT, STATS_BASELINE);
+    }
+}
@@ -0,0 +1,263 @@
+/****************************************************
+ Runs any Visualizer without a screen and exports its frames.
+
+ The visualization is cycled and painted onto offscreen images on the calling thread,
+ while a pool of workers encodes finished frames to disk. A fixed number of frame
+ buffers is shared between the two so that simulation only waits on encoding once
+ every buffer is in flight. A gif frame keeps its buffer until it has been written,
+ so frames waiting for the gif writer are bounded by the buffers too.
+
+ Usage from Visualizer/
+     java -cp bin/ HeadlessRunner [Class to run] [output directory] [png|gif] [max frames] [steps per frame]
+****************************************************/
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+public class HeadlessRunner {
+
+    public enum Format { PNG, GIF }
+
+    private final Visualizer visualization;
+    private final File outputDir;
+    private final Format format;
+    private final int maxFrames, stepsPerFrame;
+
+    // Encoders run in parallel, the gif writer appends converted frames in order
+    private final ExecutorService encoders;
+    private final ExecutorService gifWriterThread;
+    private final BlockingQueue<BufferedImage> freeFrames;
+
+    private ImageOutputStream gifStream;
+    private ImageWriter gifWriter;
+    private boolean firstGifFrame = true;
+    // Last encoding failure, rethrown from the simulation thread
+    private volatile Throwable encodeError;
+
+    /***
+        Creates a runner for the given visualization.
+        maxFrames <= 0 runs until the visualization reports it has completed.
+        stepsPerFrame is the number of cycles between exported frames, run as one cycle(int) batch.
+    ***/
+    public HeadlessRunner(Visualizer visualization, File outputDir, Format format, int maxFrames, int stepsPerFrame) {
+        this.visualization = visualization;
+        this.outputDir = outputDir;
+        this.format = format;
+        this.maxFrames = maxFrames;
+        this.stepsPerFrame = Math.max(1, stepsPerFrame);
+
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        encoders = Executors.newFixedThreadPool(workers);
+        gifWriterThread = Executors.newSingleThreadExecutor();
+        // Two buffers per worker keeps every encoder busy while the next frame is painted
+        freeFrames = new ArrayBlockingQueue<>(workers * 2);
+        for (int i = 0; i < workers * 2; i++) {
+            freeFrames.add(new BufferedImage(Visualizer.DRAW_WIDTH, Visualizer.DRAW_HEIGHT, BufferedImage.TYPE_INT_RGB));
+        }
+    }
+
+    /***
+        Cycles the visualization until it is done (or maxFrames is reached), exporting a frame
+        every stepsPerFrame cycles. Returns the number of frames written.
+    ***/
+    public int run() throws IOException, InterruptedException {
+        outputDir.mkdirs();
+        if (format == Format.GIF) {
+            openGif();
+        }
+        int frame = 0;
+        try {
+            // Export the starting state before any steps are taken
+            boolean done = false;
+            int delay = visualization.getDelay();
+            while (true) {
+                rethrowEncodeError();
+                submitFrame(frame++, delay);
+                if (done || (maxFrames > 0 && frame >= maxFrames)) {
+                    break;
+                }
+                int ran = visualization.cycle(stepsPerFrame);
+                long delays = visualization.getBatchDelayNanos();
+                done = ran < stepsPerFrame;
+                if (done) {
+                    delays += visualization.getDelayNanos();
+                }
+                delay = (int)(delays / 1000000L);
+            }
+        } finally {
+            encoders.shutdown();
+            encoders.awaitTermination(1, TimeUnit.HOURS);
+            gifWriterThread.shutdown();
+            gifWriterThread.awaitTermination(1, TimeUnit.HOURS);
+            if (format == Format.GIF) {
+                closeGif();
+            }
+        }
+        rethrowEncodeError();
+        return frame;
+    }
+
+    // Throws the failure of an encoder, if one has failed, as it is when it can be
+    private void rethrowEncodeError() throws IOException {
+        Throwable error = encodeError;
+        if (error instanceof Error) {
+            throw (Error)error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException)error;
+        } else if (error != null) {
+            throw new IOException("Frame encoding failed", error);
+        }
+    }
+
+    // Paints the current state onto a free buffer and hands it to the encoders
+    private void submitFrame(final int index, final int delay) throws InterruptedException {
+        final BufferedImage image = freeFrames.take();
+        Graphics2D g2d = image.createGraphics();
+        try {
+            visualization.paintVisualization(g2d);
+        } finally {
+            g2d.dispose();
+        }
+
+        if (format == Format.PNG) {
+            encoders.execute(new Runnable() {
+                public void run() {
+                    try {
+                        ImageIO.write(image, "png", new File(outputDir, String.format("frame_%06d.png", index)));
+                    } catch (Throwable e) {
+                        encodeError = e;
+                    } finally {
+                        freeFrames.add(image);
+                    }
+                }
+            });
+        } else {
+            // Palette conversion is the expensive part of gif encoding, so do that in parallel.
+            // The buffer is only freed once the frame is written, which keeps the converted
+            // frames queued for the writer down to one per buffer.
+            final Future<BufferedImage> converted = encoders.submit(new Callable<BufferedImage>() {
+                public BufferedImage call() {
+                    return toIndexed(image);
+                }
+            });
+            gifWriterThread.execute(new Runnable() {
+                public void run() {
+                    try {
+                        writeGifFrame(converted.get(), delay);
+                    } catch (ExecutionException e) {
+                        encodeError = e.getCause();
+                    } catch (Throwable e) {
+                        encodeError = e;
+                    } finally {
+                        freeFrames.add(image);
+                    }
+                }
+            });
+        }
+    }
+
+    private static BufferedImage toIndexed(BufferedImage image) {
+        BufferedImage indexed = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
+        Graphics2D g2d = indexed.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return indexed;
+    }
+
+    private void openGif() throws IOException {
+        gifWriter = ImageIO.getImageWritersByFormatName("gif").next();
+        gifStream = ImageIO.createImageOutputStream(new File(outputDir, "frames.gif"));
+        gifWriter.setOutput(gifStream);
+        gifWriter.prepareWriteSequence(null);
+    }
+
+    private void writeGifFrame(BufferedImage frame, int delay) throws IOException {
+        ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(frame);
+        IIOMetadata metadata = gifWriter.getDefaultImageMetadata(type, null);
+        String formatName = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode)metadata.getAsTree(formatName);
+
+        // Gif delays are in hundredths of a second
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(Math.max(1, delay / 10)));
+        control.setAttribute("transparentColorIndex", "0");
+
+        // The first frame tells viewers to loop forever
+        if (firstGifFrame) {
+            IIOMetadataNode extension = new IIOMetadataNode("ApplicationExtension");
+            extension.setAttribute("applicationID", "NETSCAPE");
+            extension.setAttribute("authenticationCode", "2.0");
+            extension.setUserObject(new byte[] {1, 0, 0});
+            child(root, "ApplicationExtensions").appendChild(extension);
+            firstGifFrame = false;
+        }
+
+        metadata.setFromTree(formatName, root);
+        gifWriter.writeToSequence(new IIOImage(frame, null, metadata), null);
+    }
+
+    private void closeGif() throws IOException {
+        gifWriter.endWriteSequence();
+        gifStream.close();
+        gifWriter.dispose();
+    }
+
+    // Finds the named child of a metadata tree, creating it if it is missing
+    private static IIOMetadataNode child(IIOMetadataNode root, String name) {
+        for (int i = 0; i < root.getLength(); i++) {
+            if (root.item(i).getNodeName().equalsIgnoreCase(name)) {
+                return (IIOMetadataNode)root.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        root.appendChild(node);
+        return node;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Must be set before anything touches the AWT toolkit
+        System.setProperty("java.awt.headless", "true");
+
+        if (args.length < 2) {
+            System.out.println("Usage: HeadlessRunner [Class to run] [output directory] [png|gif] [max frames] [steps per frame]");
+            System.exit(0);
+        }
+        Format format = args.length > 2 ? Format.valueOf(args[2].toUpperCase()) : Format.PNG;
+        int maxFrames = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        int stepsPerFrame = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+
+        Visualizer visualization;
+        try {
+            visualization = (Visualizer)Class.forName(args[0]).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            System.out.println("ERROR - class " + args[0] + " could not be found. Please ensure it has been compiled.");
+            System.exit(0);
+            return;
+        }
+        visualization.setSize(Visualizer.DRAW_WIDTH, Visualizer.DRAW_HEIGHT);
+
+        long start = System.nanoTime();
+        int frames = new HeadlessRunner(visualization, new File(args[1]), format, maxFrames, stepsPerFrame).run();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("Wrote %d frames to %s in %.2f s%n", frames, args[1], elapsed / 1e9);
+    }
+}
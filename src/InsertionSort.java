@@ -15,41 +15,60 @@ public class InsertionSort extends Sort {
     private int progress = 0;
     //Held number while inserting
     private int temp;
-    //Held color
-    private Color tempColor = null;
 
     //Creates a selection sort with default colors
     public InsertionSort() {
-        super();
-        for (int i = 0; i < array.length; i++)
-            setMarkerColor(i, UNSORTED);
-        temp = array[0];
+        this(randomValues());
+    }
+
+    //Creates an insertion sort over the given values
+    public InsertionSort(int[] values) {
+        super(values);
+        fillMarkers(0, array.length, UNSORTED);
+        // An empty array is done at once and holds nothing
+        if (array.length > 0) {
+            temp = get(0);
+        }
         sortIndex = 0;
     }
 
     // Makes one comparison per cycle
     public boolean cycle() {
+        return step();
+    }
+
+    // Makes up to maxSteps comparisons in one call
+    public int cycle(int maxSteps) {
+        long delays = 0;
+        int steps = 0;
+        while (steps < maxSteps && !step()) {
+            delays += delay;
+            steps++;
+        }
+        batchDelayNanos = delays * 1000000L;
+        return steps;
+    }
+
+    private boolean step() {
         //If only one element is unsorted, the sorting is done
         if (progress == array.length)
             return true;
 
         if (sortIndex >= progress) {
-            array[sortIndex] = temp;
+            set(sortIndex, temp);
             progress++;
             setMarkerColor(sortIndex, NORMAL_COMP);
             sortIndex = 0;
             if(progress < array.length) {
-                temp = array[progress];
+                temp = get(progress);
                 setMarkerColor(progress, INSERT_COMP);
             }
-            for(int i = 0; i < progress; i++) {
-                setMarkerColor(i, SORTED);
-            }
+            fillMarkers(0, progress, SORTED);
         }
         else {
-            if (array[sortIndex] > temp) {
-                int temp2 = array[sortIndex];
-                array[sortIndex] = temp;
+            if (compareValue(sortIndex, temp) > 0) {
+                int temp2 = get(sortIndex);
+                set(sortIndex, temp);
                 temp = temp2;
                 setMarkerColor(sortIndex, INSERT_COMP);
                 delay = 50;
@@ -59,7 +78,6 @@ public class InsertionSort extends Sort {
                 setMarkerColor(sortIndex, SORTED);
             }
             sortIndex++;
-            tempColor = getMarkerColor(sortIndex);
             setMarkerColor(sortIndex, NORMAL_COMP);
         }
 
@@ -73,6 +91,27 @@ public class InsertionSort extends Sort {
         return delay;
     }
 
+    public boolean reset() {
+        resetValues();
+        fillMarkers(0, array.length, UNSORTED);
+        progress = 0;
+        if (array.length > 0) {
+            temp = get(0);
+        }
+        delay = 5;
+        return true;
+    }
+
+    protected int[] saveIndices() {
+        return new int[] {progress, temp, delay};
+    }
+
+    protected void restoreIndices(int[] indices) {
+        progress = indices[0];
+        temp = indices[1];
+        delay = indices[2];
+    }
+
     public String getTitle() {
         return "Insertion Sort";
     }
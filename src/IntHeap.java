@@ -0,0 +1,114 @@
+/****************************************************
+ Priority queue of the ints 0 to capacity - 1, lowest priority first, for
+ searches that keep nodes by the best distance found so far.
+
+ A binary heap in a plain int[] with the priorities in a long[] and the
+ position of every queued int kept alongside, so lowering the priority of
+ an int already queued moves it in place instead of adding it again. The
+ heap never holds more than capacity entries and never allocates.
+****************************************************/
+public class IntHeap {
+    private final int[] heap;
+    // Position of each int in heap plus one, 0 when it is not queued
+    private final int[] position;
+    private final long[] priority;
+    private int size;
+
+    public IntHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        priority = new long[capacity];
+    }
+
+    /***
+        Queues value with the given priority, or lowers the priority it is queued with. A higher
+        priority than the one it is queued with is ignored.
+    ***/
+    public void offer(int value, long newPriority) {
+        int at = position[value] - 1;
+        if (at < 0) {
+            at = size++;
+            heap[at] = value;
+        } else if (newPriority >= priority[value]) {
+            return;
+        }
+        priority[value] = newPriority;
+        siftUp(at);
+    }
+
+    /***
+        Takes the value with the lowest priority off the queue.
+    ***/
+    public int poll() {
+        if (size == 0) {
+            throw new IllegalStateException("Heap is empty");
+        }
+        int top = heap[0];
+        position[top] = 0;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 1;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    public boolean contains(int value) {
+        return position[value] != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = 0;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int at) {
+        int value = heap[at];
+        long key = priority[value];
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (priority[heap[parent]] <= key) {
+                break;
+            }
+            move(heap[parent], at);
+            at = parent;
+        }
+        move(value, at);
+    }
+
+    private void siftDown(int at) {
+        int value = heap[at];
+        long key = priority[value];
+        while (true) {
+            int child = 2 * at + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && priority[heap[child + 1]] < priority[heap[child]]) {
+                child++;
+            }
+            if (priority[heap[child]] >= key) {
+                break;
+            }
+            move(heap[child], at);
+            at = child;
+        }
+        move(value, at);
+    }
+
+    private void move(int value, int at) {
+        heap[at] = value;
+        position[value] = at + 1;
+    }
+}
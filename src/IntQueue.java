@@ -0,0 +1,54 @@
+/****************************************************
+ First in, first out queue of ints kept in a ring buffer, for frontiers
+ that are added to and taken from every step. Like IntStack nothing is
+ boxed and nothing is allocated unless the queue grows past its capacity.
+****************************************************/
+public class IntQueue {
+    private int[] values;
+    // Position of the oldest value and the number of values queued
+    private int head, size;
+
+    public IntQueue(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            // Unroll the ring into a larger array, oldest value first
+            int[] grown = new int[2 * values.length];
+            System.arraycopy(values, head, grown, 0, values.length - head);
+            System.arraycopy(values, 0, grown, values.length - head, head);
+            values = grown;
+            head = 0;
+        }
+        int tail = head + size;
+        values[tail < values.length ? tail : tail - values.length] = value;
+        size++;
+    }
+
+    /***
+        Takes the oldest value off the queue.
+    ***/
+    public int remove() {
+        if (size == 0) {
+            throw new IllegalStateException("Queue is empty");
+        }
+        int value = values[head];
+        head = head + 1 == values.length ? 0 : head + 1;
+        size--;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,51 @@
+/****************************************************
+ Stack of ints kept in a plain array, for work lists that are pushed and
+ popped every step. Nothing is boxed and nothing is allocated unless the
+ stack grows past its capacity, so give it the most it will hold up front.
+****************************************************/
+import java.util.Arrays;
+
+public class IntStack {
+    private int[] values;
+    private int size;
+
+    public IntStack(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    public void push(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, 2 * values.length);
+        }
+        values[size++] = value;
+    }
+
+    public int pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Stack is empty");
+        }
+        return values[--size];
+    }
+
+    /***
+        Value at a position counted from the bottom of the stack.
+    ***/
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -1,14 +1,28 @@
 /***********************************************************************
  @author Kurt Lewis 
 ************************************************************************/
+import java.awt.CardLayout;
+import java.awt.Component;
+import java.awt.Container;
 import java.awt.EventQueue;
-import java.io.File;
+import java.awt.event.ActionEvent;
+import javax.swing.AbstractAction;
+import javax.swing.JComponent;
 import javax.swing.JFrame;
-import java.lang.reflect.Modifier;
+import javax.swing.KeyStroke;
+import java.util.Arrays;
+import java.util.Locale;
 
 public class MainFrame extends JFrame {
     // TODO - determine default display size
     public final static int BOARD_WIDTH = 900, BOARD_HEIGHT = 900;
+    // Speed to go back to when unpausing
+    private double pausedSpeed = 1;
+    // Visualizations are shown again after a reset, so each one's panel is added once and
+    // brought to the front by the card layout whenever it comes up
+    private final CardLayout cards = new CardLayout();
+    private VisualizationPool pool;
+    private VisualizationGrid grid;
 
     public MainFrame() {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);        
@@ -16,45 +30,128 @@ public class MainFrame extends JFrame {
         setLocationRelativeTo(null);
         setTitle("Visualizations");
         setResizable(true);
+        getContentPane().setLayout(cards);
+        // + and - double and halve the speed of every visualization, space pauses and resumes
+        // them and 1 goes back to normal speed
+        for (char key : new char[] {'+', '=', '-', ' ', '1'}) {
+            bindSpeedKey(key);
+        }
+        showSpeed();
         setVisible(true);
     }
 
-    public void run(String[] args) {
-
-        if (args.length == 0) {
-            // If no arguments were supplied
-            // fill args with a list of classes in the bin/ folder
-            // this will prrrrooobbbaaabbbllllyyy only work when run from Visualizer/ folder
-            File[] files = new File("bin/").listFiles();
-            args = new String[files.length];
-            for (int i = 0; i < files.length; i++) {
-                //manually trim the strings. Definitely better ways to do this
-                if (files[i].toString().endsWith(".class")) {
-                    args[i] = files[i].toString().substring(4, files[i].toString().length()-6);
+    private void bindSpeedKey(final char key) {
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key), "speed " + key);
+        getRootPane().getActionMap().put("speed " + key, new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                double speed = VisualizationScheduler.getSpeed();
+                if (key == '+' || key == '=') {
+                    VisualizationScheduler.setSpeed(speed * 2);
+                } else if (key == '-') {
+                    VisualizationScheduler.setSpeed(speed / 2);
+                } else if (key == ' ' && speed > 0) {
+                    pausedSpeed = speed;
+                    VisualizationScheduler.setSpeed(0);
+                } else if (key == ' ') {
+                    VisualizationScheduler.setSpeed(pausedSpeed);
+                } else {
+                    VisualizationScheduler.setSpeed(1);
                 }
+                showSpeed();
             }
+        });
+    }
+
+    private void showSpeed() {
+        double speed = VisualizationScheduler.getSpeed();
+        setTitle(speed == 1 ? "Visualizations" : speed == 0 ? "Visualizations - paused"
+            : String.format(Locale.ROOT, "Visualizations - %.3gx", speed));
+    }
+
+    public void run(String[] args) {
+        // With --grid [tiles] that many visualizations are shown at once instead of one at a time,
+        // with --seek [step] each one is fast-forwarded to that step before it is shown
+        int tiles = 1;
+        long seek = 0;
+        while (args.length > 1 && (args[0].equals("--grid") || args[0].equals("--seek"))) {
+            if (args[0].equals("--grid")) {
+                tiles = Integer.parseInt(args[1]);
+            } else {
+                seek = Long.parseLong(args[1]);
+            }
+            args = Arrays.copyOfRange(args, 2, args.length);
         }
+
+        // Without arguments every visualization on the class path is shown. The first one
+        // starts as soon as it is found, the rest are discovered in the background.
+        // Each one is reset to be shown again rather than created anew, see VisualizationPool.
+        VisualizationRegistry registry = args.length == 0 ? VisualizationRegistry.discover() : VisualizationRegistry.of(args);
+        pool = new VisualizationPool(registry);
+        Visualizer[] visualizations = new Visualizer[tiles];
         while (true) {
-            for (int i = 0; i < args.length; i++) {
-                try {
-                    Class<?> myClass = ClassLoader.getSystemClassLoader().loadClass(args[i]); 
-                    // Make sure class is a child class of Visualizer, and is not abstract
-                    if (Visualizer.class.isAssignableFrom(myClass) && !Modifier.isAbstract(myClass.getModifiers())) {
-                        Visualizer visualization = (Visualizer)myClass.newInstance();
-                        visualization.setSize(getWidth(), getHeight());
-                        add(visualization);
-                        visualization.start();
-                        remove(visualization);
-                    }          
-                } catch (Exception e) {
-                    System.out.println("ERROR - class " +args[i] + " could not be found. Please ensure it has been compiled.");
+            pool.release();
+            for (int t = 0; t < tiles; t++) {
+                visualizations[t] = pool.next();
+                if (visualizations[t] == null) {
+                    System.out.println("ERROR - no visualizations found. Please ensure they have been compiled.");
                     System.exit(0);
                 }
-            
+                if (seek > 0) {
+                    new VisualizationSeeker(visualizations[t]).fastForward(seek);
+                }
+            }
+            if (tiles == 1) {
+                show(visualizations[0]);
+            } else {
+                showGrid(visualizations);
             }
         }
     }
 
+    /***
+        Displays a visualization in this frame until it has completed
+    ***/
+    public void show(Visualizer visualization) {
+        if (visualization.getParent() != getContentPane()) {
+            removeUnpooled();
+            add(visualization, cardName(visualization));
+            validate();
+        }
+        cards.show(getContentPane(), cardName(visualization));
+        visualization.start();
+    }
+
+    /***
+        Displays several visualizations in a grid in this frame until all of them have completed
+    ***/
+    public void showGrid(Visualizer[] visualizations) {
+        if (grid == null || !grid.shows(visualizations)) {
+            if (grid != null) {
+                remove(grid);
+            }
+            int columns = (int)Math.ceil(Math.sqrt(visualizations.length));
+            grid = new VisualizationGrid(visualizations.clone(), columns);
+            add(grid, cardName(grid));
+            validate();
+        }
+        cards.show(getContentPane(), cardName(grid));
+        grid.start();
+    }
+
+    // Drops the panels of visualizations that will not be shown again
+    private void removeUnpooled() {
+        Container content = getContentPane();
+        for (Component component : content.getComponents()) {
+            if (component instanceof Visualizer && (pool == null || !pool.isPooled((Visualizer)component))) {
+                content.remove(component);
+            }
+        }
+    }
+
+    private static String cardName(Component component) {
+        return Integer.toHexString(System.identityHashCode(component));
+    }
+
     public static void main(String[] args) {
         MainFrame main = new MainFrame();
         main.run(args);
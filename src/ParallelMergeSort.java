@@ -0,0 +1,120 @@
+/***
+ Bottom up merge sort split between the workers of a ParallelSort. Each pass
+ merges runs of the same width, and is cut into a few tasks per worker of
+ whole merges. A pass is only started once every merge of the one before it
+ is finished, which is the join of the sort.
+ ***/
+
+public class ParallelMergeSort extends ParallelSort {
+
+    // Merges of a pass handed out per worker, more than one so a slow worker is not waited on
+    private static final int TASKS_PER_WORKER = 4;
+
+    // Merges are written here and then copied back, each task to its own part
+    private final int[] merged;
+    // Width of the runs merged in the current pass and where its next task starts
+    private int width = 1, next;
+
+    public ParallelMergeSort() {
+        this(randomValues());
+    }
+
+    // Creates a parallel merge sort over the given values
+    public ParallelMergeSort(int[] values) {
+        super(values);
+        merged = new int[array.length];
+    }
+
+    // Creates a parallel merge sort with the given workers, each taking up to stepsPerCycle steps per cycle
+    public ParallelMergeSort(int[] values, int workers, int stepsPerCycle) {
+        super(values, workers, stepsPerCycle);
+        merged = new int[array.length];
+    }
+
+    public boolean reset() {
+        resetValues();
+        width = 1;
+        next = 0;
+        return true;
+    }
+
+    protected Task newTask() {
+        return new Merges();
+    }
+
+    protected boolean nextTask(boolean idle, Worker worker) {
+        while (width < array.length) {
+            if (next + width < array.length) {
+                // Cut the pass into whole merges, a few per worker
+                int pair = 2 * width;
+                int pairs = (array.length + pair - 1) / pair;
+                int pairsPerTask = Math.max(1, (pairs + getWorkers() * TASKS_PER_WORKER - 1) / (getWorkers() * TASKS_PER_WORKER));
+                int from = next;
+                next = (int)Math.min(array.length, from + (long)pairsPerTask * pair);
+                worker.spawn(from, next);
+                return true;
+            }
+            // The next pass reads what this one writes, so wait for all of it to finish
+            if (!idle) {
+                return false;
+            }
+            width *= 2;
+            next = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Merges each pair of neighboring runs of the current width in a range, taking one value
+     * per step into merged and then copying one value back per step.
+     */
+    private class Merges extends Task {
+        // Current merge of from to middle and middle to end, and the positions within it
+        private int start, middle, end, left, right, out;
+        private boolean copying;
+
+        protected void begin() {
+            merge(from);
+        }
+
+        private void merge(int start) {
+            this.start = start;
+            middle = Math.min(start + width, to);
+            end = Math.min(start + 2 * width, to);
+            left = start;
+            right = middle;
+            out = start;
+            copying = false;
+        }
+
+        protected boolean step(Worker worker) {
+            if (!copying) {
+                if (right >= end || (left < middle && worker.compare(left, right) <= 0)) {
+                    merged[out++] = worker.get(left++);
+                } else {
+                    merged[out++] = worker.get(right++);
+                }
+                if (out == end) {
+                    copying = true;
+                    out = start;
+                }
+                return false;
+            }
+            worker.set(out, merged[out]);
+            out++;
+            if (out < end) {
+                return false;
+            }
+            // A run without a partner is already in place
+            if (end + width >= to) {
+                return true;
+            }
+            merge(end);
+            return false;
+        }
+    }
+
+    public String getTitle() {
+        return "Parallel Merge Sort";
+    }
+}
@@ -0,0 +1,91 @@
+/***
+ Quicksort split between the workers of a ParallelSort. Partitioning a range
+ spawns a task for each side, which idle workers steal, so the number of
+ workers busy grows as the ranges are split.
+ ***/
+
+public class ParallelQuickSort extends ParallelSort {
+
+    private boolean started;
+
+    public ParallelQuickSort() {
+        this(randomValues());
+    }
+
+    // Creates a parallel quicksort over the given values
+    public ParallelQuickSort(int[] values) {
+        super(values);
+    }
+
+    // Creates a parallel quicksort with the given workers, each taking up to stepsPerCycle steps per cycle
+    public ParallelQuickSort(int[] values, int workers, int stepsPerCycle) {
+        super(values, workers, stepsPerCycle);
+    }
+
+    public boolean reset() {
+        resetValues();
+        started = false;
+        return true;
+    }
+
+    protected Task newTask() {
+        return new Partition();
+    }
+
+    // The whole array is the only range not spawned by a partition
+    protected boolean nextTask(boolean idle, Worker worker) {
+        if (started || array.length < 2) {
+            return false;
+        }
+        started = true;
+        worker.spawn(0, array.length);
+        return true;
+    }
+
+    /**
+     * Partitions a range around the value in its middle, one comparison per step, then spawns
+     * a task for each side that still needs sorting.
+     */
+    private static class Partition extends Task {
+        private int pivot, store, scan;
+
+        protected void begin() {
+            pivot = -1;
+        }
+
+        protected boolean step(Worker worker) {
+            if (pivot < 0) {
+                // Move the middle value to the end to use as the pivot
+                pivot = to - 1;
+                worker.swap((from + to) >>> 1, pivot);
+                store = from;
+                scan = from;
+                return false;
+            }
+            if (scan < pivot) {
+                if (worker.compare(scan, pivot) < 0) {
+                    if (store != scan) {
+                        worker.swap(store, scan);
+                    }
+                    store++;
+                }
+                scan++;
+                return false;
+            }
+            if (store != pivot) {
+                worker.swap(store, pivot);
+            }
+            if (store - from > 1) {
+                worker.spawn(from, store);
+            }
+            if (to - store - 1 > 1) {
+                worker.spawn(store + 1, to);
+            }
+            return true;
+        }
+    }
+
+    public String getTitle() {
+        return "Parallel Quicksort";
+    }
+}
@@ -0,0 +1,425 @@
+/****************************************************
+ Base of sorts whose work is shared between several workers, each working
+ on a range of the array no other worker touches.
+
+ Work is split into tasks over ranges of the array. A worker steps its task
+ and spawns new ranges onto a queue of its own, which it works through
+ newest first, fork/join style. Queued ranges are only pairs of ints and
+ each worker runs them all with the one Task object it was given, so
+ stepping allocates nothing.
+ A cycle has two halves:
+  - The busy workers each take their steps at the same time on a
+    ForkJoinPool shared by sorts with as many workers. They read and write
+    array directly and note the range of indicies they changed in fields
+    of their own, so workers share nothing but their disjoint parts of the
+    array and never wait on a lock. They finish into a CountedCompleter
+    rather than being joined, so no thread blocks on another.
+  - The animating thread alone then reports the changed ranges to the
+    bars, adds up the operation counts, hands idle workers a task (stolen
+    from the oldest end of the longest queue, or asked of the sort) and
+    colors the range of each worker's task in that worker's color.
+
+ Workers are set with -Dsort.workers=[workers]. Each worker takes one step
+ per cycle by default so the animation stays readable, benchmarks give
+ them more so the time spent in the pool is worth it.
+ Workers write the array without the Sort helpers, so parallel sorts can
+ not be recorded to a SortTrace.
+****************************************************/
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.locks.LockSupport;
+
+public abstract class ParallelSort extends Sort {
+    /**
+     * Number of workers a parallel sort is created with, set with -Dsort.workers=[workers]
+     */
+    public static final int DEFAULT_WORKERS = Integer.getInteger("sort.workers",
+        Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
+
+    public static final Color IDLE = Color.decode("#444444");
+    // Ranges a worker's queue holds before it has to grow, more than a balanced split ever needs
+    private static final int QUEUE_CAPACITY = 64;
+    // Color of each worker's range, repeated when there are more workers than colors
+    private static final Color[] WORKER_COLORS = {Color.decode("#E6194B"), Color.decode("#4363D8"),
+        Color.decode("#FFE119"), Color.decode("#F58231"), Color.decode("#911EB4"), Color.decode("#42D4F4"),
+        Color.decode("#F032E6"), Color.decode("#FFFFFF")};
+
+    private final Worker[] workers;
+    // Workers with a task in the current cycle, and the action that runs them in the pool
+    private final Worker[] busy;
+    private int busyCount;
+    private final StepBusy stepBusy;
+    private final int stepsPerCycle;
+    private final ForkJoinPool pool;
+    // Pools shared by every sort with the same number of workers, so threads outlive the sorts
+    private static final Map<Integer, ForkJoinPool> POOLS = new HashMap<>();
+
+    /**
+     * Work on the range from (inclusive) to to (exclusive) of the array. Each worker has one,
+     * which is given each range it takes in turn.
+     */
+    protected abstract static class Task {
+        protected int from, to;
+
+        /**
+         * Gets ready to work on a new range, called before its first step.
+         */
+        protected abstract void begin();
+
+        /**
+         * Takes one step, using only the operations of the worker and only inside the range.
+         * Returns true once the task is finished.
+         */
+        protected abstract boolean step(Worker worker);
+    }
+
+    /**
+     * One of the workers of the sort, with the operations its tasks use on the array.
+     */
+    protected final class Worker extends CountedCompleter<Void> {
+        private final Color color;
+        private final Task task;
+        // Whether task is working on a range
+        private boolean running;
+        // Ranges waiting to be worked on as from, to pairs, the oldest at head
+        private int[] queue = new int[2 * QUEUE_CAPACITY];
+        private int head, tail;
+        // Range of indicies written in the current cycle
+        private int changedFrom = Integer.MAX_VALUE, changedTo = Integer.MIN_VALUE;
+        private long reads, comparisons, swaps, writes;
+        // Range currently drawn in this worker's color, and whether it is being left this cycle
+        private int coloredFrom, coloredTo;
+        private boolean left;
+
+        private Worker(Color color, Task task, StepBusy stepBusy) {
+            super(stepBusy);
+            this.color = color;
+            this.task = task;
+        }
+
+        /**
+         * Queues the range from (inclusive) to to (exclusive) for this worker, or for an idle
+         * one that steals it.
+         */
+        public void spawn(int from, int to) {
+            if (tail == queue.length) {
+                // Move the queue back to the start, or make room if it is full
+                if (head == 0) {
+                    queue = Arrays.copyOf(queue, 2 * queue.length);
+                } else {
+                    System.arraycopy(queue, head, queue, 0, tail - head);
+                    tail -= head;
+                    head = 0;
+                }
+            }
+            queue[tail++] = from;
+            queue[tail++] = to;
+        }
+
+        private boolean hasWork() {
+            return running || head < tail;
+        }
+
+        private int queued() {
+            return (tail - head) / 2;
+        }
+
+        // Takes the oldest queued range for another worker
+        private void giveOldest(Worker thief) {
+            thief.spawn(queue[head], queue[head + 1]);
+            head += 2;
+            if (head == tail) {
+                head = 0;
+                tail = 0;
+            }
+        }
+
+        public int get(int index) {
+            reads++;
+            return array[index];
+        }
+
+        public void set(int index, int value) {
+            writes++;
+            array[index] = value;
+            changed(index);
+        }
+
+        public void swap(int i, int j) {
+            swaps++;
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+            changed(i);
+            changed(j);
+        }
+
+        public int compare(int i, int j) {
+            comparisons++;
+            return Integer.compare(array[i], array[j]);
+        }
+
+        public int compareValue(int index, int value) {
+            comparisons++;
+            return Integer.compare(array[index], value);
+        }
+
+        private void changed(int index) {
+            changedFrom = Math.min(changedFrom, index);
+            changedTo = Math.max(changedTo, index + 1);
+        }
+
+        @Override
+        public void compute() {
+            steps();
+            tryComplete();
+        }
+
+        // Takes this cycle's steps, moving on to the newest queued range whenever one finishes
+        private void steps() {
+            for (int steps = 0; steps < stepsPerCycle; steps++) {
+                if (!running) {
+                    if (head == tail) {
+                        return;
+                    }
+                    task.to = queue[--tail];
+                    task.from = queue[--tail];
+                    if (head == tail) {
+                        head = 0;
+                        tail = 0;
+                    }
+                    task.begin();
+                    running = true;
+                }
+                if (task.step(this)) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a parallel sort over the given values with DEFAULT_WORKERS workers that each
+     * take one step per cycle.
+     */
+    protected ParallelSort(int[] values) {
+        this(values, DEFAULT_WORKERS, 1);
+    }
+
+    /**
+     * Creates a parallel sort over the given values with the given number of workers, each
+     * taking up to stepsPerCycle steps per cycle.
+     */
+    protected ParallelSort(int[] values, int workerCount, int stepsPerCycle) {
+        super(values);
+        this.stepsPerCycle = Math.max(1, stepsPerCycle);
+        workers = new Worker[Math.max(1, workerCount)];
+        busy = new Worker[workers.length];
+        stepBusy = new StepBusy();
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(WORKER_COLORS[i % WORKER_COLORS.length], newTask(), stepBusy);
+        }
+        pool = workers.length > 1 ? sharedPool(workers.length) : null;
+        fillMarkers(0, array.length, IDLE);
+    }
+
+    /**
+     * Runs the busy workers of a cycle in the pool, one on the pool thread it starts on and the
+     * rest forked for other pool threads to take. Each worker completes into this once its steps
+     * are taken, so no thread blocks on a join, and the last one wakes the animating thread.
+     */
+    private final class StepBusy extends CountedCompleter<Void> {
+        private volatile boolean finished;
+        private Thread waiter;
+
+        @Override
+        public void compute() {
+            setPendingCount(busyCount - 1);
+            for (int i = 1; i < busyCount; i++) {
+                busy[i].reinitialize();
+                busy[i].fork();
+            }
+            busy[0].steps();
+            tryComplete();
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            finished = true;
+            LockSupport.unpark(waiter);
+        }
+
+        // Runs the busy workers and waits for all of them
+        void run() {
+            waiter = Thread.currentThread();
+            finished = false;
+            reinitialize();
+            pool.execute(this);
+            while (!finished) {
+                LockSupport.park(this);
+            }
+            // onCompletion comes just before the task is marked done, which has to happen before it is reused
+            while (!isDone()) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static synchronized ForkJoinPool sharedPool(int parallelism) {
+        ForkJoinPool shared = POOLS.get(parallelism);
+        if (shared == null) {
+            shared = new ForkJoinPool(parallelism);
+            POOLS.put(parallelism, shared);
+        }
+        return shared;
+    }
+
+    /**
+     * Creates the task a worker runs its ranges with.
+     */
+    protected abstract Task newTask();
+
+    /**
+     * Gives out work that is not spawned by another task, such as the first range or the next
+     * pass, by spawning it on the worker. idle is true when no worker has a task or any queued.
+     * Returns false when there is none.
+     */
+    protected abstract boolean nextTask(boolean idle, Worker worker);
+
+    /**
+     * Also empties every worker's queue and puts the whole array back to IDLE, so a subclass
+     * only has to start its own fields over in reset().
+     */
+    @Override
+    protected void resetValues() {
+        super.resetValues();
+        for (Worker worker : workers) {
+            worker.running = false;
+            worker.head = 0;
+            worker.tail = 0;
+            worker.changedFrom = Integer.MAX_VALUE;
+            worker.changedTo = Integer.MIN_VALUE;
+            worker.reads = 0;
+            worker.comparisons = 0;
+            worker.swaps = 0;
+            worker.writes = 0;
+            worker.coloredFrom = 0;
+            worker.coloredTo = 0;
+            worker.left = false;
+        }
+        fillMarkers(0, array.length, IDLE);
+    }
+
+    public int getWorkers() {
+        return workers.length;
+    }
+
+    // The workers change the array directly, which a trace would miss
+    public boolean isTraceable() {
+        return false;
+    }
+
+    // Steps every worker that has work, then brings the bars and markers up to date
+    public boolean cycle() {
+        assignTasks();
+        busyCount = 0;
+        for (Worker worker : workers) {
+            if (worker.hasWork()) {
+                busy[busyCount++] = worker;
+            }
+        }
+        if (busyCount == 0) {
+            return true;
+        }
+
+        if (busyCount == 1 || pool == null) {
+            for (int i = 0; i < busyCount; i++) {
+                busy[i].steps();
+            }
+        } else {
+            stepBusy.run();
+        }
+
+        for (int i = 0; i < busyCount; i++) {
+            Worker worker = busy[i];
+            valuesChanged(worker.changedFrom, worker.changedTo);
+            worker.changedFrom = Integer.MAX_VALUE;
+            worker.changedTo = Integer.MIN_VALUE;
+            countOperations(worker.reads, worker.comparisons, worker.swaps, worker.writes);
+            worker.reads = 0;
+            worker.comparisons = 0;
+            worker.swaps = 0;
+            worker.writes = 0;
+        }
+        updateMarkers();
+        return false;
+    }
+
+    // Gives every worker without work a task, stolen from the longest queue if there is one
+    private void assignTasks() {
+        for (Worker worker : workers) {
+            if (worker.hasWork()) {
+                continue;
+            }
+            Worker victim = null;
+            for (Worker other : workers) {
+                if (other.queued() > (victim == null ? 0 : victim.queued())) {
+                    victim = other;
+                }
+            }
+            if (victim != null) {
+                victim.giveOldest(worker);
+            } else {
+                nextTask(isIdle(), worker);
+            }
+        }
+    }
+
+    private boolean isIdle() {
+        for (Worker worker : workers) {
+            if (worker.hasWork()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Clears the ranges workers have left before coloring the ones they are in, since a
+    // new range may lie inside one another worker just left
+    private void updateMarkers() {
+        for (Worker worker : workers) {
+            worker.left = false;
+            if (currentFrom(worker) != worker.coloredFrom || currentTo(worker) != worker.coloredTo) {
+                fillMarkers(worker.coloredFrom, worker.coloredTo, IDLE);
+                worker.left = true;
+            }
+        }
+        for (Worker worker : workers) {
+            int from = currentFrom(worker), to = currentTo(worker);
+            boolean overwritten = false;
+            for (Worker other : workers) {
+                overwritten |= other.left && other.coloredFrom < to && from < other.coloredTo;
+            }
+            if (worker.left || overwritten) {
+                fillMarkers(from, to, worker.color);
+            }
+        }
+        for (Worker worker : workers) {
+            worker.coloredFrom = currentFrom(worker);
+            worker.coloredTo = currentTo(worker);
+        }
+    }
+
+    // Range of the task a worker is on, or of the one it will take next
+    private static int currentFrom(Worker worker) {
+        return worker.running ? worker.task.from : worker.head < worker.tail ? worker.queue[worker.tail - 2] : 0;
+    }
+
+    private static int currentTo(Worker worker) {
+        return worker.running ? worker.task.to : worker.head < worker.tail ? worker.queue[worker.tail - 1] : 0;
+    }
+}
@@ -0,0 +1,90 @@
+/****************************************************
+ An image drawn by writing its pixels directly.
+
+ The pixels are the int[] behind the image's DataBufferInt, one RGB int
+ per pixel, row after row. Axis aligned rectangles are filled a row span
+ at a time with Arrays.fill, with no antialiasing, compositing or clip
+ objects in between, which is all bar charts and grids of cells need.
+ Text and other shapes can still be drawn onto getImage() with Java2D.
+
+ Holding on to the pixels keeps Java2D from caching the image in video
+ memory, which costs nothing when it is only ever drawn in software.
+****************************************************/
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+public class PixelCanvas {
+    // Spans up to this wide are written pixel by pixel instead of with Arrays.fill
+    private static final int NARROW_SPAN = 8;
+
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final int width, height;
+
+    /***
+        Creates a black canvas of the given size in pixels.
+    ***/
+    public PixelCanvas(int width, int height) {
+        this.width = width;
+        this.height = height;
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    }
+
+    /***
+        Fills the rectangle with the given RGB color, leaving out any part outside the canvas.
+    ***/
+    public void fillRect(int x, int y, int rectWidth, int rectHeight, int rgb) {
+        int left = Math.max(0, x), right = Math.min(width, x + rectWidth);
+        int top = Math.max(0, y), bottom = Math.min(height, y + rectHeight);
+        if (left >= right || top >= bottom) {
+            return;
+        }
+        if (left == 0 && right == width) {
+            // Whole rows are one span
+            Arrays.fill(pixels, top * width, bottom * width, rgb);
+        } else if (right - left <= NARROW_SPAN) {
+            // A call to Arrays.fill per row costs more than the few pixels it writes
+            int spanWidth = right - left;
+            for (int row = top * width + left, end = bottom * width; row < end; row += width) {
+                for (int i = 0; i < spanWidth; i++) {
+                    pixels[row + i] = rgb;
+                }
+            }
+        } else {
+            for (int row = top * width; top < bottom; top++, row += width) {
+                Arrays.fill(pixels, row + left, row + right, rgb);
+            }
+        }
+    }
+
+    /***
+        Sets a single pixel, which has to be on the canvas.
+    ***/
+    public void setPixel(int x, int y, int rgb) {
+        pixels[y * width + x] = rgb;
+    }
+
+    /***
+        The image the pixels belong to, for drawing it or drawing onto it with Java2D.
+    ***/
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /***
+        The pixels of the image, row after row.
+    ***/
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -3,7 +3,6 @@
  ***/
 
 import java.awt.Color;
-import java.util.Stack;
 
 public class QuickSort extends Sort {
 
@@ -13,18 +12,49 @@ public class QuickSort extends Sort {
 
     private int startl, left, startr, right, pivot;
     private int delay = 50;
-    private Stack<Integer> commands = new Stack<>();
+    // Bounds of the ranges still to be sorted. They never overlap and each has at least two
+    // elements, so there are never more than array.length bounds pending.
+    private IntStack commands;
 
     public QuickSort() {
-        super();
-        for (int i = 0; i < array.length; i++)
-            setMarkerColor(i, DEFAULT_COLOR);
-        commands.push(0);
-        commands.push(array.length - 1);
+        this(randomValues());
+    }
+
+    // Creates a quicksort over the given values
+    public QuickSort(int[] values) {
+        this(SortValues.of(values));
+    }
+
+    // Creates a quicksort over values of any type, which it only compares and swaps
+    public QuickSort(SortValues values) {
+        super(values);
+        commands = new IntStack(array.length + 2);
+        fillMarkers(0, array.length, DEFAULT_COLOR);
+        // Fewer than two values are already sorted
+        if (array.length >= 2) {
+            commands.push(0);
+            commands.push(array.length - 1);
+        }
     }
 
     // Makes one swap per cycle
     public boolean cycle() {
+        return step();
+    }
+
+    // Makes up to maxSteps steps without returning in between, adding up their delays
+    public int cycle(int maxSteps) {
+        long delays = 0;
+        int steps = 0;
+        while (steps < maxSteps && !step()) {
+            delays += delay;
+            steps++;
+        }
+        batchDelayNanos = delays * 1000000L;
+        return steps;
+    }
+
+    private boolean step() {
         if (left >= right) {
             if (commands.isEmpty()) {
               delay = 500;
@@ -36,19 +66,17 @@ public class QuickSort extends Sort {
             left = pivot + 1;
             startl = pivot;
 
-            for(int i = 0; i < array.length; i++)
-                setMarkerColor(i, DEFAULT_COLOR);
+            fillMarkers(0, array.length, DEFAULT_COLOR);
 
             setMarkerColor(pivot, PIVOT);
 
-            for(int i = left + 1; i < right; i++)
-              setMarkerColor(i, SELECTED);
+            fillMarkers(left + 1, right, SELECTED);
 
             setMarkerColor(right, RIGHT);
             setMarkerColor(left, LEFT);
         }
 
-        while (right >= left && array[right] > array[pivot]) {
+        while (right >= left && compare(right, pivot) > 0) {
             setMarkerColor(right, RIGHT);
             right--;
             if (right > left) {
@@ -56,7 +84,9 @@ public class QuickSort extends Sort {
               return false;
             }
         }
-        while (left <= right && array[left] < array[pivot]) {
+        // Values equal to the pivot stay on the left, so a swap always lets both sides move on
+        // and runs of equal values can not be swapped back and forth forever
+        while (left <= right && compare(left, pivot) <= 0) {
             setMarkerColor(left, LEFT);
             left++;
             if (left < right) {
@@ -67,15 +97,11 @@ public class QuickSort extends Sort {
 
         if (right >= left) {
             delay = 250;
-            int temp = array[left];
-            array[left] = array[right];
-            array[right] = temp;
+            swap(left, right);
         }
         else {
             delay = 500;
-            int temp = array[pivot];
-            array[pivot] = array[right];
-            array[right] = temp;
+            swap(pivot, right);
             if (startr - right - 1 > 0) {
                 commands.push(right + 1);
                 commands.push(startr);
@@ -94,6 +120,51 @@ public class QuickSort extends Sort {
       return delay;
     }
 
+    // The ranges still to be sorted follow the indicies of the current one
+    public boolean reset() {
+        resetValues();
+        fillMarkers(0, array.length, DEFAULT_COLOR);
+        startl = 0;
+        left = 0;
+        startr = 0;
+        right = 0;
+        pivot = 0;
+        delay = 50;
+        commands.clear();
+        if (array.length >= 2) {
+            commands.push(0);
+            commands.push(array.length - 1);
+        }
+        return true;
+    }
+
+    protected int[] saveIndices() {
+        int[] indices = new int[6 + commands.size()];
+        indices[0] = startl;
+        indices[1] = left;
+        indices[2] = startr;
+        indices[3] = right;
+        indices[4] = pivot;
+        indices[5] = delay;
+        for (int i = 0; i < commands.size(); i++) {
+            indices[6 + i] = commands.get(i);
+        }
+        return indices;
+    }
+
+    protected void restoreIndices(int[] indices) {
+        startl = indices[0];
+        left = indices[1];
+        startr = indices[2];
+        right = indices[3];
+        pivot = indices[4];
+        delay = indices[5];
+        commands.clear();
+        for (int i = 6; i < indices.length; i++) {
+            commands.push(indices[i]);
+        }
+    }
+
     public String getTitle() {
         return "Quicksort";
     }
@@ -14,13 +14,38 @@ public class SelectionSort extends Sort {
     private int delay = 50;
 
     public SelectionSort() {
-      super();
-      for(int i = 0; i < array.length; i++)
-        setMarkerColor(i, UNSORTED);
+      this(randomValues());
+    }
+
+    // Creates a selection sort over the given values
+    public SelectionSort(int[] values) {
+      this(SortValues.of(values));
+    }
+
+    // Creates a selection sort over ints, longs, doubles or keyed records
+    public SelectionSort(SortValues values) {
+      super(values);
+      fillMarkers(0, array.length, UNSORTED);
     }
 
     // Makes one comparison or swap per cycle
     public boolean cycle() {
+        return step();
+    }
+
+    // Makes up to maxSteps comparisons or swaps in one call
+    public int cycle(int maxSteps) {
+        long delays = 0;
+        int steps = 0;
+        while (steps < maxSteps && !step()) {
+            delays += delay;
+            steps++;
+        }
+        batchDelayNanos = delays * 1000000L;
+        return steps;
+    }
+
+    private boolean step() {
         // no action to take if less than 2 in length
         // finished sorting if the sort Index is at the end of the array
         if (this.array.length < 2 || sortIndex == this.array.length - 1) {
@@ -28,7 +53,7 @@ public class SelectionSort extends Sort {
         }
 
         //if a new minimum was found, update the minimum index
-        if (array[searchIndex] < array[minIndex]) {
+        if (compare(searchIndex, minIndex) < 0) {
             //unmark the old min and mark the new min
             setMarkerColor(minIndex, DEFAULT_COLOR);
             minIndex = searchIndex;
@@ -48,17 +73,13 @@ public class SelectionSort extends Sort {
             setMarkerColor(minIndex, DEFAULT_COLOR);
             setMarkerColor(sortIndex, SORTED);
 
-            int temp = array[minIndex];
-            array[minIndex] = array[sortIndex];
-            array[sortIndex] = temp;
+            swap(minIndex, sortIndex);
             sortIndex++;
             if (sortIndex == array.length - 1)
                 return true;
             searchIndex = sortIndex + 1;
             minIndex = sortIndex;
-            for(int i = searchIndex; i < array.length; i++) {
-              setMarkerColor(i, UNSORTED);
-            }
+            fillMarkers(searchIndex, array.length, UNSORTED);
             setMarkerColor(minIndex, COMP_LOW);
         }
         //If not at the end of the array yet, keep searching
@@ -70,6 +91,25 @@ public class SelectionSort extends Sort {
         return false;
     }
 
+    public boolean reset() {
+        resetValues();
+        fillMarkers(0, array.length, UNSORTED);
+        minIndex = 0;
+        searchIndex = 0;
+        delay = 50;
+        return true;
+    }
+
+    protected int[] saveIndices() {
+        return new int[] {minIndex, searchIndex, delay};
+    }
+
+    protected void restoreIndices(int[] indices) {
+        minIndex = indices[0];
+        searchIndex = indices[1];
+        delay = indices[2];
+    }
+
     public String getTitle() {
         return "Selection Sort";
     }
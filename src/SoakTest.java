@@ -0,0 +1,162 @@
+/****************************************************
+ Shows visualizations one after another for hours without a screen, the
+ way an always-on display runs, and checks that the heap and the number
+ of threads stay flat.
+
+ Visualizations come from a VisualizationPool, so each one is reset and
+ shown again, and are stepped by a VisualizationScheduler just as in
+ MainFrame, at a raised speed so a run covers many passes. Each sample
+ prints the heap in use after a collection, the live threads, the passes
+ so far and how many visualizations have been created. The first sample
+ is taken once every visualization has been shown twice, and the run fails if
+ a later one has MAX_HEAP_GROWTH more heap in use or more threads, or if
+ a sort finishes with its array out of order.
+
+ Before that every visualization is created CLOSE_CHECK_COUNT times,
+ cycled a little and closed, as callers do with a run they cut short, and
+ the run fails if that leaves more threads alive than it started with.
+
+ Usage from Visualizer/
+     java -cp bin/ SoakTest [minutes] [seconds between samples] [speed] [Classes to run]
+****************************************************/
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+
+public class SoakTest {
+    static final long DEFAULT_MINUTES = 180, DEFAULT_SAMPLE_SECONDS = 60;
+    static final double DEFAULT_SPEED = 1000;
+    // Heap in use may grow this much over the first sample before the run fails
+    static final long MAX_HEAP_GROWTH = 4 * 1024 * 1024;
+    // Instances of each visualization closed part way through, and the cycles run on each first
+    static final int CLOSE_CHECK_COUNT = 50, CLOSE_CHECK_CYCLES = 10;
+    // Time closed threads get to end before they are counted
+    static final long CLOSE_CHECK_MILLIS = 1000;
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    // Heap in use once everything unreachable has been collected
+    private static long usedHeap() {
+        MEMORY.gc();
+        MEMORY.gc();
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    // Creates, cycles and closes every visualization, returning how many more threads are alive after
+    private static int closeCheck(VisualizationRegistry registry) {
+        // One of each first, threads they start once and keep for all instances are not leaks
+        createAndClose(registry, 1);
+        int before = THREADS.getThreadCount();
+        createAndClose(registry, CLOSE_CHECK_COUNT);
+        try {
+            Thread.sleep(CLOSE_CHECK_MILLIS);
+        } catch (InterruptedException e) {
+            System.out.println("Caught InterruptedException: " + e.getMessage());
+        }
+        return THREADS.getThreadCount() - before;
+    }
+
+    // Creates count instances of every visualization, cycling each a little before closing it
+    private static void createAndClose(VisualizationRegistry registry, int count) {
+        for (int index = 0; ; index++) {
+            for (int instance = 0; instance < count; instance++) {
+                Visualizer visualization = registry.create(index);
+                if (visualization == null) {
+                    return;
+                }
+                for (int cycle = 0; cycle < CLOSE_CHECK_CYCLES; cycle++) {
+                    if (visualization.cycle()) {
+                        break;
+                    }
+                }
+                if (visualization instanceof AutoCloseable) {
+                    try {
+                        ((AutoCloseable)visualization).close();
+                    } catch (Exception e) {
+                        System.out.println("ERROR - could not close " + visualization.getClass().getName() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        long minutes = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_MINUTES;
+        long sampleSeconds = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_SAMPLE_SECONDS;
+        VisualizationScheduler.setSpeed(args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_SPEED);
+        VisualizationRegistry registry = args.length > 3 ? VisualizationRegistry.of(Arrays.copyOfRange(args, 3, args.length))
+            : VisualizationRegistry.discover();
+        VisualizationPool pool = new VisualizationPool(registry);
+
+        int leaked = closeCheck(registry);
+        System.out.println("Threads after closing " + CLOSE_CHECK_COUNT + " of each visualization: " + Math.max(leaked, 0) + " more");
+
+        Runnable noFrames = new Runnable() {
+            public void run() {
+                // Frames are still drawn and published, there is just nobody to show them to
+            }
+        };
+        Visualizer[] shown = new Visualizer[1];
+        long start = System.nanoTime(), end = start + minutes * 60000000000L;
+        long nextSample = start;
+        long passes = 0, unsorted = 0, baseHeap = -1, maxHeap = 0;
+        int baseThreads = -1, maxThreads = 0;
+        while (System.nanoTime() < end) {
+            pool.release();
+            shown[0] = pool.next();
+            if (shown[0] == null) {
+                System.out.println("ERROR - no visualizations found. Please ensure they have been compiled.");
+                System.exit(1);
+            }
+            new VisualizationScheduler(shown, noFrames).run();
+            if (shown[0] instanceof Sort && !BatchRunner.isSorted(((Sort)shown[0]).array)) {
+                unsorted++;
+                System.out.println("NOT SORTED - " + shown[0].getClass().getName() + " after pass " + passes);
+            }
+            passes++;
+
+            // After going round twice every visualization has been created and reset at least once
+            if (passes >= 2 * registry.size() && (baseHeap < 0 || System.nanoTime() - nextSample >= 0)) {
+                long heap = usedHeap();
+                int threads = THREADS.getThreadCount();
+                if (baseHeap < 0) {
+                    baseHeap = heap;
+                    baseThreads = threads;
+                }
+                maxHeap = Math.max(maxHeap, heap);
+                maxThreads = Math.max(maxThreads, threads);
+                System.out.println(String.format(Locale.ROOT, "%8.1f min  heap %8.1f kB  threads %3d  passes %8d  created %6d",
+                    (System.nanoTime() - start) / 6e10, heap / 1024.0, threads, passes, pool.getCreated()));
+                nextSample = System.nanoTime() + sampleSeconds * 1000000000L;
+            }
+        }
+
+        boolean failed = unsorted > 0 || baseHeap < 0;
+        if (leaked > 0) {
+            System.out.println("FAILED - " + leaked + " threads still alive after closing visualizations");
+            failed = true;
+        }
+        if (baseHeap >= 0) {
+            long heap = usedHeap();
+            int threads = THREADS.getThreadCount();
+            System.out.println(String.format(Locale.ROOT, "Heap %.1f kB at the first sample, %.1f kB at most, %.1f kB at the end; threads %d, %d at most, %d at the end",
+                baseHeap / 1024.0, maxHeap / 1024.0, heap / 1024.0, baseThreads, maxThreads, threads));
+            if (heap - baseHeap > MAX_HEAP_GROWTH) {
+                System.out.println("FAILED - heap in use grew by " + (heap - baseHeap) / 1024 + " kB");
+                failed = true;
+            }
+            if (threads > baseThreads) {
+                System.out.println("FAILED - " + (threads - baseThreads) + " more threads than at the first sample");
+                failed = true;
+            }
+        } else {
+            System.out.println("FAILED - the run ended before every visualization had been shown");
+        }
+        System.out.println(passes + " passes, " + pool.getCreated() + " visualizations created, " + unsorted + " left unsorted");
+        System.exit(failed ? 1 : 0);
+    }
+}
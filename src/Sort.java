@@ -6,89 +6,834 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.Random;
 
 public abstract class Sort extends Visualizer {
+    /**
+     * Number of elements a sort is created with, set with -Dsort.size=[elements]
+     */
+    public static final int DEFAULT_SIZE = Integer.getInteger("sort.size", 50);
+    /**
+     * Input a sort created without arguments takes its values from, set with -Dsort.input=[input]
+     */
+    public static final String DEFAULT_INPUT = System.getProperty("sort.input", "random");
+
+    /**
+     * Ways the bars and markers can be filled in. Both draw the same picture.
+     */
+    public enum Renderer {
+        /**
+         * Graphics2D.fillRect on the canvas, with antialiasing on.
+         */
+        JAVA2D,
+        /**
+         * Spans written straight into the pixels of the canvas, see PixelCanvas.
+         */
+        RASTER
+    }
+
+    /**
+     * Renderer a sort is created with, set with -Dsort.renderer=[java2d|raster]
+     */
+    public static final Renderer DEFAULT_RENDERER = Renderer.valueOf(System.getProperty("sort.renderer", "java2d").toUpperCase(Locale.ROOT));
+
+    // Area of the canvas the bars are drawn in
+    static final int GRAPH_LEFT = 100, GRAPH_BOTTOM = 900, GRAPH_WIDTH = 800, GRAPH_HEIGHT = 800;
+    private static final int GRAPH_TOP = GRAPH_BOTTOM - GRAPH_HEIGHT - 2;
+    private static final int MIN_MARKER_HEIGHT = 4, TITLE_BASELINE = 100;
+    // Marker colors are stored in a byte per element
+    private static final int MAX_MARKER_COLORS = 256;
+
+    /**
+     * Values being sorted when they are ints. For values of any other type this holds the
+     * level each bar is drawn at instead, and is swapped along with the values.
+     */
     protected int[] array;
     protected int sortIndex;
     private String title = "Sort";
     private Font font;
-    private Color barColor, backgroundColor, titleColor;
+    private Color barColor, spreadColor, backgroundColor, titleColor;
+
+    /**
+     * Colors of of markers at the different bar indicies, stored as indicies into the palette.
+     */
+    private byte[] markers;
+    private Color[] palette = new Color[MAX_MARKER_COLORS];
+    private int paletteSize;
 
     /**
-     * Colors of of markers at the different bar indicies.
+     * Recorder the operations of this sort are written to, if any.
      */
-    private Color[] markerColors;
+    private SortTrace trace;
+
+    /**
+     * Operations counted by the get/set/swap/compare helpers.
+     */
+    private long reads, comparisons, swaps, writes;
+
+    /**
+     * Once there are more elements than pixels, each bar is a column summarizing a range
+     * of elements. Columns track their smallest and largest value and the last value written
+     * to them, and the color of the last marker set in them. Summaries are updated as values
+     * change, a column is only rescanned when its smallest or largest value is overwritten.
+     */
+    private int columns, columnWidth;
+    private int[] columnMin, columnMax, columnLast;
+    private boolean[] columnStale;
+    private byte[] columnMarkers;
+    // Range of values mapped onto the bar heights
+    private int lowValue, highValue;
+    // Levels the range of values that do not fit in an int is spread over
+    private static final int LEVELS = 1 << 30;
+
+    /**
+     * Values of every type, and the arrays behind the types other than int. Only the
+     * array of the type in use is set.
+     */
+    private final SortValues values;
+    private final long[] longValues;
+    private final double[] doubleValues;
+    private final int[] payloads;
+    // Draws the values of each reset, and how many resets there have been
+    private final Random random = new Random();
+    private long resets;
+    // Seed set with -Dsort.seed, null when every run should differ
+    private static final Long SEED = Long.getLong("sort.seed");
+    private static SortInput defaultInput;
+
+    /**
+     * Canvas the sort is drawn on between frames, with the columns changed since it was
+     * last painted. When fullRedraw is set everything is drawn again instead.
+     */
+    private BufferedImage canvas;
+    private Graphics2D canvasGraphics;
+    // Pixels of canvas when the RASTER renderer draws the bars, otherwise null
+    private PixelCanvas pixels;
+    private Renderer renderer = DEFAULT_RENDERER;
+    private boolean[] columnDirty;
+    private int[] dirtyColumns;
+    private int dirtyCount;
+    /**
+     * Marker changes are tracked as a range of columns that may have changed, which is
+     * compared against the markers that were last drawn when the next frame is painted.
+     * Resetting a range and then marking a few indicies again only redraws the net change.
+     */
+    private byte[] drawnMarkers;
+    private int markerChangeLow = Integer.MAX_VALUE, markerChangeHigh = -1;
+    private boolean fullRedraw = true;
+    // Horizontal extent of the title and the lowest pixel it reaches
+    private int titleLeft, titleRight, titleBottom;
 
     public Sort() {
-        array = new int[50];
-        font = new Font("Helvetica", Font.BOLD, 60);
+        this(randomValues());
+    }
 
-        //Randomizes array of 50 items
-        Random generator = new Random();
-        for (int i = 0; i < array.length; i++) {
-            array[i] = i;
-        }
-        for (int i = 0; i < array.length; i++) {
-            int temp = array[i%array.length];
-            int index = generator.nextInt(array.length);
-            array[i%array.length] = array[index];
-            array[index] = temp;
-        }
+    /**
+     * Creates a sort over the given starting values.
+     */
+    protected Sort(int[] values) {
+        this(SortValues.of(values));
+    }
+
+    /**
+     * Creates a sort over starting values of any type. Values other than ints can only be
+     * sorted with compare and swap.
+     */
+    protected Sort(SortValues values) {
+        this.values = values;
+        longValues = values.getLongs();
+        doubleValues = values.getDoubles();
+        payloads = values.getPayloads();
+        array = values.getType() == SortValues.Type.INT ? values.getInts() : new int[values.size()];
+        font = new Font("Helvetica", Font.BOLD, 60);
         sortIndex = 0;
         title = getTitle();
-        barColor = Color.GREEN;
+        setBarColor(Color.GREEN);
         backgroundColor = Color.BLACK;
         titleColor = Color.WHITE;
 
-        //Setup the marker colors
-        markerColors = new Color[array.length];
-        for(int i = 0; i < array.length; i++) {
-            markerColors[i] = backgroundColor;
-        }
+        //Setup the marker colors, every marker starts as palette entry 0
+        markers = new byte[array.length];
+        paletteIndex(backgroundColor);
+
+        columns = Math.max(1, Math.min(array.length, GRAPH_WIDTH));
+        columnWidth = GRAPH_WIDTH / columns;
+        columnMin = new int[columns];
+        columnMax = new int[columns];
+        columnLast = new int[columns];
+        columnStale = new boolean[columns];
+        columnMarkers = new byte[columns];
+        drawnMarkers = new byte[columns];
+        columnDirty = new boolean[columns];
+        dirtyColumns = new int[columns];
+        arrayChanged();
     }
 
+    /**
+     * Draws onto a canvas kept between frames. Only the columns that changed since the
+     * last frame are redrawn, the title and background are drawn once when the canvas
+     * is created (or the colors change) and the canvas is then copied to g2d.
+     */
     public void paintVisualization(Graphics2D g2d) {
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (canvas == null) {
+            if (renderer == Renderer.RASTER) {
+                pixels = new PixelCanvas(Visualizer.DRAW_WIDTH, Visualizer.DRAW_HEIGHT);
+                canvas = pixels.getImage();
+            } else {
+                pixels = null;
+                canvas = new BufferedImage(Visualizer.DRAW_WIDTH, Visualizer.DRAW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+            }
+            // Java2D still draws the title with either renderer
+            canvasGraphics = canvas.createGraphics();
+            canvasGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            fullRedraw = true;
+        }
+
+        if (fullRedraw) {
+            fullRedraw = false;
+            paintBackground();
+            for (int c = 0; c < columns; c++) {
+                columnDirty[c] = false;
+                paintColumn(c);
+            }
+        } else {
+            for (int k = 0; k < dirtyCount; k++) {
+                int c = dirtyColumns[k];
+                columnDirty[c] = false;
+                paintColumn(c);
+            }
+            for (int c = markerChangeLow; c <= markerChangeHigh; c++) {
+                if (columnMarkers[c] != drawnMarkers[c]) {
+                    paintColumn(c);
+                }
+            }
+        }
+        dirtyCount = 0;
+        markerChangeLow = Integer.MAX_VALUE;
+        markerChangeHigh = -1;
+
+        g2d.drawImage(canvas, 0, 0, null);
+    }
+
+    /**
+     *  Draws the background and title across the whole canvas.
+     */
+    private void paintBackground() {
         // Draw Background
-        g2d.setColor(backgroundColor);
-        g2d.fillRect(0, 0, Visualizer.DRAW_WIDTH, Visualizer.DRAW_HEIGHT);
+        fillRect(0, 0, Visualizer.DRAW_WIDTH, Visualizer.DRAW_HEIGHT, backgroundColor);
         //draw font
-        g2d.setFont(font);
-        g2d.setColor(titleColor);
-        FontMetrics metr = this.getFontMetrics(font);
-        g2d.drawString(title, (Visualizer.DRAW_WIDTH - metr.stringWidth(title)) / 2, 100);
-
-        // Draw bars for bar graph representing sort
-        int barWidth = 800 / array.length;
-        int barHeightScale = 800 / array.length;
-        g2d.setColor(barColor);
-        for (int i = 0; i < array.length; i++) {
-            int barHeight = barHeightScale*array[i];
-            g2d.fillRect(100 + i * barWidth, 900 - barHeight, barWidth, barHeight);
+        canvasGraphics.setFont(font);
+        FontMetrics metr = canvasGraphics.getFontMetrics(font);
+        titleLeft = (Visualizer.DRAW_WIDTH - metr.stringWidth(title)) / 2;
+        titleRight = titleLeft + metr.stringWidth(title);
+        titleBottom = TITLE_BASELINE + metr.getDescent();
+        paintTitle();
+    }
+
+    private void paintTitle() {
+        canvasGraphics.setFont(font);
+        canvasGraphics.setColor(titleColor);
+        canvasGraphics.drawString(title, titleLeft, TITLE_BASELINE);
+    }
+
+    /**
+     *  Clears and redraws the bar and marker of a single column.
+     */
+    private void paintColumn(int c) {
+        if (columnStale[c]) {
+            summarizeColumn(c);
+        }
+        int x = GRAPH_LEFT + c * columnWidth;
+        int markerHeight = Math.max(MIN_MARKER_HEIGHT, GRAPH_HEIGHT / Math.max(1, array.length));
+        int minHeight = barHeight(columnMin[c]);
+        int maxHeight = barHeight(columnMax[c]);
+        // Only clear above the bar, everything below is drawn over anyway
+        fillRect(x, GRAPH_TOP, columnWidth, GRAPH_BOTTOM - maxHeight - GRAPH_TOP, backgroundColor);
+        // Put back any part of the title that hangs down into the column
+        if (titleBottom > GRAPH_TOP && x < titleRight && x + columnWidth > titleLeft) {
+            canvasGraphics.setClip(x, GRAPH_TOP, columnWidth, titleBottom - GRAPH_TOP);
+            paintTitle();
+            canvasGraphics.setClip(null);
+        }
+
+        // Draw bars for bar graph representing sort. Every element at least as tall as the
+        // shortest one in the column is solid, the spread up to the tallest one is dimmed.
+        fillRect(x, GRAPH_BOTTOM - minHeight, columnWidth, minHeight, barColor);
+        if (maxHeight > minHeight) {
+            fillRect(x, GRAPH_BOTTOM - maxHeight, columnWidth, maxHeight - minHeight, spreadColor);
+            // Tick at the value most recently written into the column
+            fillRect(x, GRAPH_BOTTOM - barHeight(columnLast[c]) - 1, columnWidth, 2, titleColor);
         }
 
         // Draw markers for graph representing notes.
+        fillRect(x, GRAPH_BOTTOM, columnWidth, markerHeight, palette[columnMarkers[c] & 0xFF]);
+        drawnMarkers[c] = columnMarkers[c];
+    }
+
+    /**
+     *  Fills a rectangle of the canvas with the renderer in use.
+     */
+    private void fillRect(int x, int y, int width, int height, Color color) {
+        if (pixels != null) {
+            pixels.fillRect(x, y, width, height, color.getRGB());
+        } else {
+            canvasGraphics.setColor(color);
+            canvasGraphics.fillRect(x, y, width, height);
+        }
+    }
+
+    /**
+     *  Switches to drawing the bars with the given renderer, starting with the next frame.
+     *  Call it before the sort is shown, or from the thread that paints it.
+     */
+    public void setRenderer(Renderer renderer) {
+        if (renderer != this.renderer) {
+            this.renderer = renderer;
+            if (canvasGraphics != null) {
+                canvasGraphics.dispose();
+            }
+            canvas = null;
+        }
+    }
+
+    public Renderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     *  Queues a column to be redrawn in the next frame.
+     */
+    private void markDirty(int column) {
+        if (!columnDirty[column]) {
+            columnDirty[column] = true;
+            dirtyColumns[dirtyCount++] = column;
+        }
+    }
+
+    /**
+     *  Height in pixels of the bar for a value.
+     */
+    private int barHeight(int value) {
+        long offset = Math.max(0, Math.min((long)value - lowValue, (long)highValue - lowValue + 1));
+        return (int)(offset * GRAPH_HEIGHT / ((long)highValue - lowValue + 1));
+    }
+
+    /**
+     *  Height in pixels the tallest bar is drawn at, 0 when there are no elements. Worked out
+     *  from the values alone so frames can be checked against it.
+     */
+    int tallestBarHeight() {
+        int tallest = 0;
         for (int i = 0; i < array.length; i++) {
-            g2d.setColor(markerColors[i]);
-            g2d.fillRect(100 + i * barWidth, 900, barWidth, barHeightScale);
+            tallest = Math.max(tallest, barHeight(array[i]));
         }
+        return tallest;
+    }
+
+    /**
+     *  Column an element is drawn in.
+     */
+    private int columnOf(int index) {
+        return (int)((long)index * columns / array.length);
+    }
+
+    /**
+     *  Rescans every element of a column to find its smallest and largest values.
+     */
+    private void summarizeColumn(int column) {
+        int start = column == 0 ? 0 : columnEnd(column - 1);
+        int end = columnEnd(column);
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = start; i < end; i++) {
+            min = Math.min(min, array[i]);
+            max = Math.max(max, array[i]);
+        }
+        if (start >= end) {
+            // Only an empty sort has a column with no elements, it is drawn with no bar
+            min = max = lowValue;
+        }
+        columnMin[column] = min;
+        columnMax[column] = max;
+        columnStale[column] = false;
+    }
+
+    /**
+     *  Index just past the last element drawn in a column.
+     */
+    private int columnEnd(int column) {
+        return (int)(((long)(column + 1) * array.length + columns - 1) / columns);
+    }
+
+    /**
+     *  Updates the summary of the column holding index after its value changed.
+     */
+    private void valueChanged(int index, int oldValue, int newValue) {
+        int column = columnOf(index);
+        columnLast[column] = newValue;
+        markDirty(column);
+        if (columnStale[column]) {
+            return;
+        }
+        if (newValue <= columnMin[column]) {
+            columnMin[column] = newValue;
+        } else if (oldValue == columnMin[column]) {
+            columnStale[column] = true;
+        }
+        if (newValue >= columnMax[column]) {
+            columnMax[column] = newValue;
+        } else if (oldValue == columnMax[column]) {
+            columnStale[column] = true;
+        }
+    }
+
+    /**
+     *  Tells the sort the values from index from (inclusive) to index to (exclusive) may have
+     *  been written straight to array. The columns holding them are rescanned when next drawn.
+     */
+    protected void valuesChanged(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int low = columnOf(from), high = columnOf(to - 1);
+        for (int c = low; c <= high; c++) {
+            columnStale[c] = true;
+            columnLast[c] = array[Math.min(to, columnEnd(c)) - 1];
+            markDirty(c);
+        }
+    }
+
+    /**
+     *  Adds operations made without the get/set/swap/compare helpers to the counters.
+     */
+    protected void countOperations(long reads, long comparisons, long swaps, long writes) {
+        this.reads += reads;
+        this.comparisons += comparisons;
+        this.swaps += swaps;
+        this.writes += writes;
+    }
+
+    /**
+     *  Rebuilds every column summary and the range of values drawn, for use after the
+     *  array has been changed without going through set or swap.
+     */
+    void arrayChanged() {
+        if (longValues != null || doubleValues != null) {
+            placeLevels();
+        }
+        lowValue = Integer.MAX_VALUE;
+        highValue = Integer.MIN_VALUE;
+        for (int i = 0; i < array.length; i++) {
+            lowValue = Math.min(lowValue, array[i]);
+            highValue = Math.max(highValue, array[i]);
+        }
+        // Keep the zero baseline of the original 0 to n - 1 bars
+        lowValue = Math.min(0, lowValue);
+        highValue = Math.max(lowValue, highValue);
+        for (int c = 0; c < columns; c++) {
+            summarizeColumn(c);
+            columnLast[c] = columnMax[c];
+        }
+        fullRedraw = true;
+    }
+
+    /**
+     *  Puts each long or double value at the level its bar is drawn from, so every type is
+     *  drawn by the same mapping of level to height as ints are. Longs that all fit in an int
+     *  are their own levels, like ints. Otherwise the levels spread the range from 0 (or the
+     *  lowest value) up to the highest value evenly from 0 to LEVELS.
+     */
+    private void placeLevels() {
+        double low = 0, high = 0;
+        boolean fitsInt = longValues != null;
+        for (int i = 0; i < array.length; i++) {
+            double value = longValues != null ? longValues[i] : doubleValues[i];
+            low = Math.min(low, value);
+            high = Math.max(high, value);
+            fitsInt = fitsInt && (int)longValues[i] == longValues[i];
+        }
+        if (fitsInt) {
+            for (int i = 0; i < array.length; i++) {
+                array[i] = (int)longValues[i];
+            }
+            return;
+        }
+        double scale = high > low ? LEVELS / (high - low) : 0;
+        for (int i = 0; i < array.length; i++) {
+            double value = longValues != null ? longValues[i] : doubleValues[i];
+            array[i] = (int)((value - low) * scale);
+        }
+    }
+
+    /**
+     *  Checkpoint of a sort: its values, markers, counters and the indicies of the subclass.
+     *  Values other than ints are kept alongside their levels.
+     */
+    private static class State implements VisualizationState {
+        private final int[] values, indices;
+        private final long[] longValues;
+        private final double[] doubleValues;
+        private final int[] payloads;
+        private final byte[] markers;
+        private final int sortIndex;
+        private final long reads, comparisons, swaps, writes;
+
+        private State(Sort sort, int[] indices) {
+            values = sort.array.clone();
+            longValues = sort.longValues == null ? null : sort.longValues.clone();
+            doubleValues = sort.doubleValues == null ? null : sort.doubleValues.clone();
+            payloads = sort.payloads == null ? null : sort.payloads.clone();
+            markers = sort.markers.clone();
+            this.indices = indices;
+            sortIndex = sort.sortIndex;
+            reads = sort.reads;
+            comparisons = sort.comparisons;
+            swaps = sort.swaps;
+            writes = sort.writes;
+        }
+
+        public long getBytes() {
+            long typed = (longValues != null ? 8L : 0) + (doubleValues != null ? 8L : 0) + (payloads != null ? 4L : 0);
+            return (4L + typed) * values.length + markers.length + 4L * indices.length + 64;
+        }
+    }
+
+    /**
+     *  Override this and restoreIndices to let the sort be seeked backwards. Returns the fields
+     *  of the subclass cycle() depends on, packed into an array, or null if it can not be restored.
+     *  The array, markers, sortIndex and counters are saved by Sort.
+     */
+    protected int[] saveIndices() {
+        return null;
+    }
+
+    /**
+     *  Sets the fields of the subclass from an array returned by saveIndices.
+     */
+    protected void restoreIndices(int[] indices) {
+    }
+
+    protected VisualizationState saveState() {
+        int[] indices = saveIndices();
+        return indices == null ? null : new State(this, indices);
+    }
+
+    protected void restoreState(VisualizationState state) {
+        State saved = (State)state;
+        System.arraycopy(saved.values, 0, array, 0, array.length);
+        if (longValues != null) {
+            System.arraycopy(saved.longValues, 0, longValues, 0, longValues.length);
+        }
+        if (doubleValues != null) {
+            System.arraycopy(saved.doubleValues, 0, doubleValues, 0, doubleValues.length);
+        }
+        if (payloads != null) {
+            System.arraycopy(saved.payloads, 0, payloads, 0, payloads.length);
+        }
+        System.arraycopy(saved.markers, 0, markers, 0, markers.length);
+        for (int c = 0; c < columns && array.length > 0; c++) {
+            columnMarkers[c] = markers[columnEnd(c) - 1];
+        }
+        markersChanged(0, columns - 1);
+        sortIndex = saved.sortIndex;
+        reads = saved.reads;
+        comparisons = saved.comparisons;
+        swaps = saved.swaps;
+        writes = saved.writes;
+        restoreIndices(saved.indices);
+        arrayChanged();
+    }
+
+    /**
+     *  Values a sort created without arguments starts with, DEFAULT_SIZE values of DEFAULT_INPUT
+     *  drawn with the seed set by -Dsort.seed=[seed], or a new seed each time when it is unset.
+     */
+    protected static int[] randomValues() {
+        return defaultInput().values(DEFAULT_SIZE, SEED != null ? SEED : new Random().nextLong());
+    }
+
+    private static synchronized SortInput defaultInput() {
+        if (defaultInput == null) {
+            defaultInput = SortInput.forName(DEFAULT_INPUT);
+        }
+        return defaultInput;
+    }
+
+    /**
+     *  Starts over in the same array on new values of DEFAULT_INPUT, with every marker back to
+     *  the background and the counters cleared. Values other than ints are shuffled instead,
+     *  so the same records are sorted again. With -Dsort.seed the n-th reset always draws
+     *  the same values. Subclasses that can be reset call this from reset() and then set their
+     *  own fields back to where they start.
+     */
+    protected void resetValues() {
+        resets++;
+        if (SEED != null) {
+            random.setSeed(SEED + resets);
+        }
+        if (longValues != null || doubleValues != null) {
+            for (int i = array.length - 1; i > 0; i--) {
+                swapValues(i, random.nextInt(i + 1));
+            }
+        } else {
+            defaultInput().fill(array, random);
+        }
+        Arrays.fill(markers, (byte)0);
+        Arrays.fill(columnMarkers, (byte)0);
+        markersChanged(0, columns - 1);
+        sortIndex = 0;
+        reads = 0;
+        comparisons = 0;
+        swaps = 0;
+        writes = 0;
+        arrayChanged();
+    }
+
+    /**
+     *  Randomizes an array of the values 0 to size - 1.
+     */
+    public static int[] shuffledRange(int size) {
+        return shuffledRange(size, new Random().nextLong());
+    }
+
+    /**
+     *  Randomizes an array of the values 0 to size - 1, the same seed always gives the same order.
+     */
+    public static int[] shuffledRange(int size, long seed) {
+        return SortDistribution.RANDOM.values(size, seed);
+    }
+
+    /**
+     *  Reads the value at a given index.
+     */
+    protected int get(int index) {
+        requireInts();
+        reads++;
+        return array[index];
+    }
+
+    /**
+     *  Writes a value at a given index.
+     */
+    protected void set(int index, int value) {
+        requireInts();
+        if (trace != null) {
+            trace.write(index, value);
+        }
+        writes++;
+        int oldValue = array[index];
+        array[index] = value;
+        valueChanged(index, oldValue, value);
+    }
+
+    /**
+     *  Swaps the values at two indicies.
+     */
+    protected void swap(int i, int j) {
+        if (trace != null) {
+            trace.swap(i, j);
+        }
+        swaps++;
+        if (longValues != null || doubleValues != null) {
+            swapValues(i, j);
+        }
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+        valueChanged(i, temp, array[i]);
+        valueChanged(j, array[i], temp);
+    }
+
+    /**
+     *  Swaps two long or double values, and their payloads when they have any.
+     */
+    private void swapValues(int i, int j) {
+        if (longValues != null) {
+            long temp = longValues[i];
+            longValues[i] = longValues[j];
+            longValues[j] = temp;
+        } else {
+            double temp = doubleValues[i];
+            doubleValues[i] = doubleValues[j];
+            doubleValues[j] = temp;
+        }
+        if (payloads != null) {
+            int temp = payloads[i];
+            payloads[i] = payloads[j];
+            payloads[j] = temp;
+        }
+    }
+
+    /**
+     *  Compares the values at two indicies. Returns a negative number, zero or a positive
+     *  number when the value at i is less than, equal to or greater than the value at j.
+     */
+    protected int compare(int i, int j) {
+        if (trace != null) {
+            trace.compare(i, j);
+        }
+        comparisons++;
+        if (longValues != null || doubleValues != null) {
+            return compareValues(i, j);
+        }
+        return Integer.compare(array[i], array[j]);
+    }
+
+    /**
+     *  Compares two long or double values, kept out of compare so the int path stays small
+     *  enough to inline.
+     */
+    private int compareValues(int i, int j) {
+        if (longValues != null) {
+            return Long.compare(longValues[i], longValues[j]);
+        }
+        return Double.compare(doubleValues[i], doubleValues[j]);
+    }
+
+    /**
+     *  Compares the value at a given index with a value held outside of the array.
+     */
+    protected int compareValue(int index, int value) {
+        requireInts();
+        if (trace != null) {
+            trace.compareValue(index, value);
+        }
+        comparisons++;
+        return Integer.compare(array[index], value);
+    }
+
+    /**
+     *  Stops get, set and compareValue from reading levels as if they were the values.
+     */
+    private void requireInts() {
+        if (longValues != null || doubleValues != null) {
+            throw new UnsupportedOperationException(getClass().getName() + " can only sort " + values.getType()
+                + " values with compare and swap");
+        }
+    }
+
+    /**
+     *  The values being sorted, of whatever type the sort was created with.
+     */
+    public SortValues getValues() {
+        return values;
+    }
+
+    /**
+     *  Number of single values read so far, not counting comparisons.
+     */
+    public long getReads() {
+        return reads;
+    }
+
+    /**
+     *  Number of comparisons made so far.
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     *  Number of swaps made so far.
+     */
+    public long getSwaps() {
+        return swaps;
+    }
+
+    /**
+     *  Number of single values written so far, not counting swaps.
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     *  Starts recording every operation of this sort to the given trace, or stops recording when
+     *  trace is null. Throws UnsupportedOperationException for a sort that is not traceable.
+     */
+    public void setTrace(SortTrace trace) {
+        if (trace != null && !isTraceable()) {
+            throw new UnsupportedOperationException(getClass().getName() + " can not be traced");
+        }
+        this.trace = trace;
+    }
+
+    /**
+     *  Whether every change this sort makes goes through the helpers that write to a trace.
+     *  Override this to return false when it changes the array some other way.
+     */
+    public boolean isTraceable() {
+        return true;
     }
 
     /**
      *  Gets the color of a marker at a given index.
      */
     public Color getMarkerColor(int index) {
-        return markerColors[index];
+        return palette[markers[index] & 0xFF];
     }
 
     /**
      *  Sets the color of a marker at a given index.
      */
     public void setMarkerColor(int index, Color color) {
-        markerColors[index] = color;
+        if (trace != null) {
+            trace.marker(index, color);
+        }
+        byte entry = paletteIndex(color);
+        markers[index] = entry;
+        int column = columnOf(index);
+        columnMarkers[column] = entry;
+        markersChanged(column, column);
     }
 
+    /**
+     *  Sets the color of every marker from index from (inclusive) to index to (exclusive).
+     */
+    public void fillMarkers(int from, int to, Color color) {
+        if (from >= to) {
+            return;
+        }
+        if (trace != null) {
+            trace.markerRange(from, to, color);
+        }
+        byte entry = paletteIndex(color);
+        Arrays.fill(markers, from, to, entry);
+        int low = columnOf(from), high = columnOf(to - 1);
+        Arrays.fill(columnMarkers, low, high + 1, entry);
+        markersChanged(low, high);
+    }
+
+    private void markersChanged(int low, int high) {
+        markerChangeLow = Math.min(markerChangeLow, low);
+        markerChangeHigh = Math.max(markerChangeHigh, high);
+    }
+
+    /**
+     *  Finds the palette entry for a color, adding it if it is new.
+     */
+    private byte paletteIndex(Color color) {
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == color || palette[i].equals(color)) {
+                return (byte)i;
+            }
+        }
+        if (paletteSize == MAX_MARKER_COLORS) {
+            throw new IllegalStateException("A sort can use at most " + MAX_MARKER_COLORS + " marker colors");
+        }
+        palette[paletteSize] = color;
+        return (byte)paletteSize++;
+    }
+
+    /**
+     *  Changes the title drawn above the bars.
+     */
+    protected void setTitle(String title) {
+        this.title = title;
+        fullRedraw = true;
+    }
 
     // Override this method to provide a title for the sort
     public abstract String getTitle();
@@ -99,13 +844,17 @@ public abstract class Sort extends Visualizer {
 
     public void setBackgroundColor(Color color) {
         backgroundColor = color;
+        fullRedraw = true;
     }
 
     public void setTitleColor(Color color) {
         titleColor = color;
+        fullRedraw = true;
     }
 
     public void setBarColor(Color color) {
         barColor = color;
+        spreadColor = color.darker().darker();
+        fullRedraw = true;
     }
 }
@@ -0,0 +1,102 @@
+/****************************************************
+ Starting values read from a file of 32 bit big-endian integers with no
+ header, as written by DataOutputStream.writeInt.
+
+ The file is memory-mapped and read straight into the array of the sort
+ through an IntBuffer view, so a large dataset is never copied through a
+ buffer on the heap on its way in, and only the part a sort asks for is
+ paged in. A sort smaller than the file gets a window of consecutive
+ values starting at an offset picked by the seed, a larger one the whole
+ file.
+
+ To write a generated dataset, for example to try a million values
+     java -cp bin/ SortDataset [file] [count] [distribution] [seed]
+ and then show it with
+     java -Dsort.input=[file] -Dsort.size=[count] -cp bin/ MainFrame
+****************************************************/
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+public class SortDataset implements SortInput {
+    private final File file;
+    private final int count;
+
+    /***
+        Opens a dataset file, which has to hold a whole number of integers.
+    ***/
+    public SortDataset(File file) throws IOException {
+        this.file = file;
+        long length = file.length();
+        if (length % Integer.BYTES != 0) {
+            throw new IOException(file + " is " + length + " bytes, not a whole number of integers");
+        }
+        if (length / Integer.BYTES > Integer.MAX_VALUE - 8) {
+            throw new IOException(file + " holds more integers than an array can");
+        }
+        count = (int)(length / Integer.BYTES);
+    }
+
+    /***
+        Number of integers in the file.
+    ***/
+    public int getCount() {
+        return count;
+    }
+
+    // A sort larger than the file gets the whole file
+    public int[] values(int size, long seed) {
+        int[] values = new int[Math.min(size, count)];
+        fill(values, new Random(seed));
+        return values;
+    }
+
+    public void fill(int[] values, Random random) {
+        if (values.length > count) {
+            throw new IllegalArgumentException(file + " holds " + count + " integers, not " + values.length);
+        }
+        int length = values.length;
+        int offset = length < count ? random.nextInt(count - length + 1) : 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The window is read in mappings of at most 2 GB, the most one buffer can address
+            int done = 0;
+            while (done < length) {
+                int chunk = Math.min(length - done, Integer.MAX_VALUE / Integer.BYTES);
+                IntBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                    (long)(offset + done) * Integer.BYTES, (long)chunk * Integer.BYTES).asIntBuffer();
+                mapped.get(values, done, chunk);
+                done += chunk;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read dataset " + file, e);
+        }
+    }
+
+    /***
+        Writes values in the format a dataset is read in.
+    ***/
+    public static void write(File file, int[] values) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: SortDataset [file] [count] [distribution] [seed]");
+            System.exit(0);
+        }
+        SortInput input = SortInput.forName(args.length > 2 ? args[2] : "random");
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        write(new File(args[0]), input.values(Integer.parseInt(args[1]), seed));
+    }
+}
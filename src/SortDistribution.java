@@ -0,0 +1,111 @@
+/****************************************************
+ Orders and shapes of generated starting values, from the uniformly
+ shuffled permutation to inputs that look more like real data: mostly
+ sorted, reversed, full of duplicates, rising then falling, or skewed
+ towards a few common values.
+
+ Every distribution gives values between 0 and size - 1, so they draw on
+ the same scale, and uses only the Random it is given, so a seed always
+ gives the same values.
+****************************************************/
+import java.util.Arrays;
+import java.util.Random;
+
+public enum SortDistribution implements SortInput {
+    /**
+     * Every value from 0 to size - 1 once, in a uniformly random order.
+     */
+    RANDOM {
+        public void fill(int[] values, Random random) {
+            SORTED.fill(values, random);
+            // Fisher-Yates, every order is equally likely
+            for (int i = values.length - 1; i > 0; i--) {
+                swap(values, i, random.nextInt(i + 1));
+            }
+        }
+    },
+    /**
+     * Every value from 0 to size - 1 once, already in order.
+     */
+    SORTED {
+        public void fill(int[] values, Random random) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = i;
+            }
+        }
+    },
+    /**
+     * Sorted values with one in twenty swapped with a close neighbour.
+     */
+    NEARLY_SORTED {
+        public void fill(int[] values, Random random) {
+            SORTED.fill(values, random);
+            int size = values.length;
+            for (int swaps = size / 20; swaps > 0; swaps--) {
+                int i = random.nextInt(size);
+                int j = Math.max(0, Math.min(size - 1, i + random.nextInt(2 * NEIGHBOURHOOD + 1) - NEIGHBOURHOOD));
+                swap(values, i, j);
+            }
+        }
+    },
+    /**
+     * Every value from 0 to size - 1 once, from largest to smallest.
+     */
+    REVERSED {
+        public void fill(int[] values, Random random) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = values.length - 1 - i;
+            }
+        }
+    },
+    /**
+     * Only a handful of different values, each repeated many times, in a random order.
+     */
+    DUPLICATES {
+        public void fill(int[] values, Random random) {
+            int size = values.length;
+            int step = Math.max(1, size / DISTINCT_VALUES);
+            for (int i = 0; i < size; i++) {
+                values[i] = random.nextInt(size) / step * step;
+            }
+        }
+    },
+    /**
+     * Rising to the middle and falling again, each height appearing twice.
+     */
+    ORGAN_PIPE {
+        public void fill(int[] values, Random random) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = 2 * Math.min(i, values.length - 1 - i);
+            }
+        }
+    },
+    /**
+     * Values drawn independently with the chance of value k falling as 1 / (k + 1), so a few
+     * small values make up most of the array.
+     */
+    ZIPF {
+        public void fill(int[] values, Random random) {
+            int size = values.length;
+            double[] cumulative = new double[size];
+            double total = 0;
+            for (int k = 0; k < size; k++) {
+                total += 1.0 / (k + 1);
+                cumulative[k] = total;
+            }
+            for (int i = 0; i < size; i++) {
+                int k = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                values[i] = Math.min(size - 1, k < 0 ? -k - 1 : k);
+            }
+        }
+    };
+
+    // How far a nearly sorted value may move, and how many values the duplicates are rounded to
+    private static final int NEIGHBOURHOOD = 10, DISTINCT_VALUES = 8;
+
+    private static void swap(int[] values, int i, int j) {
+        int temp = values[i];
+        values[i] = values[j];
+        values[j] = temp;
+    }
+}
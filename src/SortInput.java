@@ -0,0 +1,53 @@
+/****************************************************
+ Starting values of a sort. The same size and seed always give the same
+ values, so a run can be repeated exactly.
+
+ A sort created without arguments takes its values from the input named by
+ -Dsort.input=[input] (random when unset) with the seed set by
+ -Dsort.seed=[seed], and a sort that is reset fills its array again from
+ the same input. An input is named either by a SortDistribution, such
+ as nearly-sorted or zipf, or by the path of a SortDataset file.
+****************************************************/
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Random;
+
+public interface SortInput {
+    /***
+        Overwrites values with the input, chosen by random where the input has any choice.
+    ***/
+    void fill(int[] values, Random random);
+
+    /***
+        Values for a sort of the given size, chosen by the seed where the input has any choice.
+    ***/
+    default int[] values(int size, long seed) {
+        int[] values = new int[size];
+        fill(values, new Random(seed));
+        return values;
+    }
+
+    /***
+        The distribution with the given name (case and dashes do not matter), or else the
+        dataset file at the given path.
+    ***/
+    static SortInput forName(String name) {
+        String constant = name.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+        for (SortDistribution distribution : SortDistribution.values()) {
+            if (distribution.name().equals(constant)) {
+                return distribution;
+            }
+        }
+        File file = new File(name);
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("Unknown sort input " + name + ", expected a distribution or a dataset file");
+        }
+        try {
+            return new SortDataset(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open dataset " + name, e);
+        }
+    }
+}
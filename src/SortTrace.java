@@ -0,0 +1,259 @@
+/***************************************************************************
+ Records every operation a Sort makes to a compact binary log so the run can
+ be replayed later by SortTracePlayer without running the algorithm again.
+
+ The log lives in a memory mapped file. It starts with a header holding the
+ title, the starting values and the starting markers, followed by one opcode
+ byte per operation with its arguments as varints. Each cycle() call ends
+ with a step opcode carrying the delay the sort asked for.
+
+ Usage from Visualizer/
+     java -cp bin/ SortTrace [Sort class to record] [trace file] [max steps]
+***************************************************************************/
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+public class SortTrace implements Closeable {
+    // "VTRC"
+    static final int MAGIC = 0x56545243, VERSION = 2;
+    // Position of the step count within the header, filled in once recording is closed
+    static final int STEP_COUNT_OFFSET = 8, HEADER_SIZE = 16;
+
+    static final byte OP_STEP = 0, OP_COMPARE = 1, OP_COMPARE_VALUE = 2, OP_SWAP = 3,
+        OP_WRITE = 4, OP_MARKER = 5, OP_PALETTE = 6, OP_MARKER_RANGE = 7;
+
+    // Largest encoding of a single operation, an opcode and three five byte varints
+    private static final int MAX_OP_SIZE = 16;
+    // How much of the file is mapped at once
+    private static final int MAP_SIZE = 16 << 20;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    // File position of the start of the current mapping
+    private long mapStart;
+    private long steps;
+
+    // Marker colors are written as indicies into this list, each color is declared once when first seen
+    private final ArrayList<Color> palette = new ArrayList<>();
+    // Number of palette entries already written to the file
+    private int declaredColors;
+
+    /***
+        Creates a trace file and writes the current state of the sort as its starting point.
+        Operations are only recorded once the trace is passed to Sort.setTrace.
+    ***/
+    public SortTrace(File file, Sort sort) throws IOException {
+        if (!sort.isTraceable()) {
+            throw new UnsupportedOperationException(sort.getClass().getName() + " can not be traced");
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, MAP_SIZE);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(0);
+
+        byte[] title = sort.getTitle().getBytes(StandardCharsets.UTF_8);
+        ensure(title.length + 5);
+        putVarint(title.length);
+        buffer.put(title);
+
+        int[] values = sort.array;
+        putVarint(values.length);
+        for (int i = 0; i < values.length; i++) {
+            ensure(5);
+            putVarint(zigzag(values[i]));
+        }
+        int[] markers = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            markers[i] = paletteIndex(sort.getMarkerColor(i));
+        }
+        ensure(5);
+        putVarint(palette.size());
+        for (int i = 0; i < palette.size(); i++) {
+            ensure(5);
+            putVarint(palette.get(i).getRGB());
+        }
+        declaredColors = palette.size();
+        for (int i = 0; i < values.length; i++) {
+            ensure(5);
+            putVarint(markers[i]);
+        }
+    }
+
+    void compare(int i, int j) {
+        op(OP_COMPARE);
+        putVarint(i);
+        putVarint(j);
+    }
+
+    void compareValue(int index, int value) {
+        op(OP_COMPARE_VALUE);
+        putVarint(index);
+        putVarint(zigzag(value));
+    }
+
+    void swap(int i, int j) {
+        op(OP_SWAP);
+        putVarint(i);
+        putVarint(j);
+    }
+
+    void write(int index, int value) {
+        op(OP_WRITE);
+        putVarint(index);
+        putVarint(zigzag(value));
+    }
+
+    void marker(int index, Color color) {
+        int paletteIndex = declareColor(color);
+        op(OP_MARKER);
+        putVarint(index);
+        putVarint(paletteIndex);
+    }
+
+    void markerRange(int from, int to, Color color) {
+        int paletteIndex = declareColor(color);
+        op(OP_MARKER_RANGE);
+        putVarint(from);
+        putVarint(to - from);
+        putVarint(paletteIndex);
+    }
+
+    // Any new palette entry has to come before the marker that uses it
+    private int declareColor(Color color) {
+        int paletteIndex = paletteIndex(color);
+        while (declaredColors < palette.size()) {
+            op(OP_PALETTE);
+            putVarint(declaredColors);
+            putVarint(palette.get(declaredColors).getRGB());
+            declaredColors++;
+        }
+        return paletteIndex;
+    }
+
+    /***
+        Marks the end of one cycle() call, delay is the value of getDelay() after the cycle.
+    ***/
+    public void step(int delay) {
+        op(OP_STEP);
+        putVarint(delay);
+        steps++;
+    }
+
+    public long getStepCount() {
+        return steps;
+    }
+
+    /***
+        Writes the step count to the header and trims the file to the recorded length.
+    ***/
+    @Override
+    public void close() throws IOException {
+        long length = mapStart + buffer.position();
+        buffer.force();
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.putLong(STEP_COUNT_OFFSET, steps);
+        header.force();
+        channel.truncate(length);
+        channel.close();
+    }
+
+    private int paletteIndex(Color color) {
+        for (int i = 0; i < palette.size(); i++) {
+            if (palette.get(i).equals(color)) {
+                return i;
+            }
+        }
+        palette.add(color);
+        return palette.size() - 1;
+    }
+
+    private void op(byte op) {
+        ensure(MAX_OP_SIZE);
+        buffer.put(op);
+    }
+
+    // Moves the mapping forward once the current one can not hold the next write
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        mapStart += buffer.position();
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, mapStart, Math.max(MAP_SIZE, bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not extend trace file", e);
+        }
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+
+    // Maps small negative and positive values to small unsigned values
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /***
+        Runs a sort to completion (or maxSteps cycles when maxSteps > 0) with no painting
+        or delays, recording every operation to the given file. Returns the number of steps.
+    ***/
+    public static long record(Sort sort, File file, long maxSteps) throws IOException {
+        try (SortTrace trace = new SortTrace(file, sort)) {
+            sort.setTrace(trace);
+            boolean done = false;
+            while (!done && (maxSteps <= 0 || trace.getStepCount() < maxSteps)) {
+                done = sort.cycle();
+                trace.step(sort.getDelay());
+            }
+            sort.setTrace(null);
+            return trace.getStepCount();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 2) {
+            System.out.println("Usage: SortTrace [Sort class to record] [trace file] [max steps]");
+            System.exit(0);
+        }
+        long maxSteps = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        Sort sort;
+        try {
+            sort = (Sort)Class.forName(args[0]).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            System.out.println("ERROR - class " + args[0] + " could not be found. Please ensure it has been compiled.");
+            System.exit(0);
+            return;
+        }
+        if (!sort.isTraceable()) {
+            System.out.println("ERROR - " + args[0] + " changes its values without the Sort helpers, so it can not be traced.");
+            System.exit(1);
+        }
+
+        File file = new File(args[1]);
+        long start = System.nanoTime();
+        long steps = record(sort, file, maxSteps);
+        System.out.printf("Recorded %d steps of %s to %s (%d bytes) in %.2f s%n", steps, sort.getTitle(),
+            file, file.length(), (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,257 @@
+/***************************************************************************
+ Plays back a trace written by SortTrace.
+
+ The whole file is memory mapped and scanned once when opened. That scan
+ keeps periodic checkpoints of the values and markers, so seeking to any
+ step only restores the nearest earlier checkpoint and applies the few
+ operations after it.
+***************************************************************************/
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class SortTracePlayer {
+    // Fewest steps between checkpoints
+    private static final int MIN_CHECKPOINT_INTERVAL = 1024;
+    // Rough cap on the number of array entries held by all checkpoints together
+    private static final long CHECKPOINT_BUDGET = 16 << 20;
+
+    private final MappedByteBuffer buffer;
+    private final String title;
+    private final long stepCount;
+    private final int dataStart;
+    private final ArrayList<Color> palette = new ArrayList<>();
+
+    // Current state
+    private final int[] values, markers;
+    private long step;
+    private int delay;
+
+    // Checkpoint i is the state after i * checkpointInterval steps
+    private final long checkpointInterval;
+    private final int[] checkpointPositions, checkpointDelays;
+    private final int[][] checkpointValues, checkpointMarkers;
+
+    public SortTracePlayer(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Trace is too large to map: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != SortTrace.MAGIC || buffer.getInt() != SortTrace.VERSION) {
+            throw new IOException("Not a sort trace: " + file);
+        }
+        stepCount = buffer.getLong();
+
+        byte[] titleBytes = new byte[getVarint()];
+        buffer.get(titleBytes);
+        title = new String(titleBytes, StandardCharsets.UTF_8);
+
+        int length = getVarint();
+        values = new int[length];
+        markers = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = SortTrace.unzigzag(getVarint());
+        }
+        int colors = getVarint();
+        for (int i = 0; i < colors; i++) {
+            palette.add(new Color(getVarint(), true));
+        }
+        for (int i = 0; i < length; i++) {
+            markers[i] = getVarint();
+        }
+        dataStart = buffer.position();
+
+        checkpointInterval = Math.max(MIN_CHECKPOINT_INTERVAL, stepCount * Math.max(1, length) / CHECKPOINT_BUDGET);
+        int checkpoints = (int)(stepCount / checkpointInterval) + 1;
+        checkpointPositions = new int[checkpoints];
+        checkpointDelays = new int[checkpoints];
+        checkpointValues = new int[checkpoints][];
+        checkpointMarkers = new int[checkpoints][];
+        buildCheckpoints();
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    // Number of steps applied so far
+    public long getStep() {
+        return step;
+    }
+
+    // Delay recorded for the most recent step
+    public int getDelay() {
+        return delay;
+    }
+
+    /***
+        The current values. The array is updated in place as the trace is played, so a sort
+        replaying this trace can use it directly as its own array.
+    ***/
+    public int[] getValues() {
+        return values;
+    }
+
+    public Color getMarkerColor(int index) {
+        return palette.get(markers[index]);
+    }
+
+    /***
+        Applies the next recorded step. If target is not null it must be using getValues() as its
+        array, changes are then made through it so it can follow along.
+        Returns
+            False: The trace has no more steps
+            True: A step was applied
+    ***/
+    public boolean step(Sort target) {
+        while (buffer.position() < buffer.limit()) {
+            byte op = buffer.get();
+            switch (op) {
+                case SortTrace.OP_STEP:
+                    delay = getVarint();
+                    step++;
+                    return true;
+                case SortTrace.OP_COMPARE:
+                    getVarint();
+                    getVarint();
+                    break;
+                case SortTrace.OP_COMPARE_VALUE:
+                    getVarint();
+                    getVarint();
+                    break;
+                case SortTrace.OP_SWAP: {
+                    int i = getVarint();
+                    int j = getVarint();
+                    if (target != null) {
+                        // The target shares the values array, let it keep its bars up to date
+                        target.swap(i, j);
+                    } else {
+                        int temp = values[i];
+                        values[i] = values[j];
+                        values[j] = temp;
+                    }
+                    break;
+                }
+                case SortTrace.OP_WRITE: {
+                    int index = getVarint();
+                    int value = SortTrace.unzigzag(getVarint());
+                    if (target != null) {
+                        target.set(index, value);
+                    } else {
+                        values[index] = value;
+                    }
+                    break;
+                }
+                case SortTrace.OP_MARKER: {
+                    int index = getVarint();
+                    markers[index] = getVarint();
+                    if (target != null) {
+                        target.setMarkerColor(index, palette.get(markers[index]));
+                    }
+                    break;
+                }
+                case SortTrace.OP_MARKER_RANGE: {
+                    int from = getVarint();
+                    int to = from + getVarint();
+                    int entry = getVarint();
+                    Arrays.fill(markers, from, to, entry);
+                    if (target != null) {
+                        target.fillMarkers(from, to, palette.get(entry));
+                    }
+                    break;
+                }
+                case SortTrace.OP_PALETTE:
+                    readPalette();
+                    break;
+                default:
+                    throw new IllegalStateException("Corrupt trace, unknown opcode " + op + " at " + (buffer.position() - 1));
+            }
+        }
+        return false;
+    }
+
+    /***
+        Moves to the state after the given number of steps, restoring the nearest checkpoint
+        when that is closer than playing forward from the current step. If sort is not null it is
+        refreshed with all of the new markers and values.
+    ***/
+    public void seek(long target, Sort sort) {
+        target = Math.max(0, Math.min(target, stepCount));
+        int checkpoint = (int)(target / checkpointInterval);
+        if (target < step || checkpoint * checkpointInterval > step) {
+            buffer.position(checkpointPositions[checkpoint]);
+            delay = checkpointDelays[checkpoint];
+            System.arraycopy(checkpointValues[checkpoint], 0, values, 0, values.length);
+            System.arraycopy(checkpointMarkers[checkpoint], 0, markers, 0, markers.length);
+            step = checkpoint * checkpointInterval;
+        }
+        while (step < target && step(null)) {
+        }
+        if (sort != null) {
+            sort.arrayChanged();
+            for (int i = 0; i < markers.length; i++) {
+                sort.setMarkerColor(i, palette.get(markers[i]));
+            }
+        }
+    }
+
+    // Plays the whole trace once, saving a checkpoint every checkpointInterval steps, then rewinds.
+    // This also collects every palette entry, so restoring a checkpoint never skips a color.
+    private void buildCheckpoints() {
+        buffer.position(dataStart);
+        saveCheckpoint(0);
+        while (step(null)) {
+            if (step % checkpointInterval == 0 && step / checkpointInterval < checkpointPositions.length) {
+                saveCheckpoint((int)(step / checkpointInterval));
+            }
+        }
+        if (step != stepCount) {
+            throw new IllegalStateException("Trace header claims " + stepCount + " steps but holds " + step);
+        }
+        buffer.position(dataStart);
+        System.arraycopy(checkpointValues[0], 0, values, 0, values.length);
+        System.arraycopy(checkpointMarkers[0], 0, markers, 0, markers.length);
+        step = 0;
+        delay = 0;
+    }
+
+    private void saveCheckpoint(int checkpoint) {
+        checkpointPositions[checkpoint] = buffer.position();
+        checkpointDelays[checkpoint] = delay;
+        checkpointValues[checkpoint] = values.clone();
+        checkpointMarkers[checkpoint] = markers.clone();
+    }
+
+    // Entries are declared in order and only once, but are read again whenever a checkpoint is replayed
+    private void readPalette() {
+        int index = getVarint();
+        int rgb = getVarint();
+        if (index == palette.size()) {
+            palette.add(new Color(rgb, true));
+        }
+    }
+
+    private int getVarint() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
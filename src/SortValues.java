@@ -0,0 +1,118 @@
+/****************************************************
+ The values a Sort puts in order, kept in one of several primitive arrays:
+ ints, longs, doubles, or records given as a long key and an int payload
+ (such as the index of the record in a table of its own) that moves with
+ its key and plays no part in comparisons.
+
+ Nothing is boxed and no Comparator is called. Sort reads the array of the
+ type in use directly in compare and swap, so each type has its own path
+ with no virtual call in between, and int values take the path Sort has
+ always had.
+
+ Whatever the type, the bars are drawn with the same mapping of value to
+ height, see Sort. Only sorts that work through compare and swap alone can
+ sort values other than ints; get, set and compareValue hold int values.
+****************************************************/
+public final class SortValues {
+    /***
+        The primitive arrays a SortValues keeps its values in.
+    ***/
+    public enum Type {
+        INT, LONG, DOUBLE, KEYED
+    }
+
+    private final Type type;
+    private final int[] ints;
+    private final long[] longs;
+    private final double[] doubles;
+    private final int[] payloads;
+
+    private SortValues(Type type, int[] ints, long[] longs, double[] doubles, int[] payloads) {
+        this.type = type;
+        this.ints = ints;
+        this.longs = longs;
+        this.doubles = doubles;
+        this.payloads = payloads;
+    }
+
+    /***
+        Sorts the given ints in place.
+    ***/
+    public static SortValues of(int[] values) {
+        return new SortValues(Type.INT, values, null, null, null);
+    }
+
+    /***
+        Sorts the given longs in place.
+    ***/
+    public static SortValues of(long[] values) {
+        return new SortValues(Type.LONG, null, values, null, null);
+    }
+
+    /***
+        Sorts the given doubles in place, in the order of Double.compare. The values have to
+        be finite to be drawn.
+    ***/
+    public static SortValues of(double[] values) {
+        return new SortValues(Type.DOUBLE, null, null, values, null);
+    }
+
+    /***
+        Sorts records by key in place: keys[i] is the key of the record payloads[i], and the
+        two arrays are swapped together.
+    ***/
+    public static SortValues keyed(long[] keys, int[] payloads) {
+        if (keys.length != payloads.length) {
+            throw new IllegalArgumentException(keys.length + " keys can not go with " + payloads.length + " payloads");
+        }
+        return new SortValues(Type.KEYED, null, keys, null, payloads);
+    }
+
+    /***
+        Sorts the indicies of the given keys by key, so once sorted getPayloads() lists the
+        records in order.
+    ***/
+    public static SortValues keyed(long[] keys) {
+        int[] payloads = new int[keys.length];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = i;
+        }
+        return keyed(keys, payloads);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int size() {
+        return ints != null ? ints.length : longs != null ? longs.length : doubles.length;
+    }
+
+    /***
+        The values of an INT sort, null for any other type.
+    ***/
+    public int[] getInts() {
+        return ints;
+    }
+
+    /***
+        The values of a LONG sort or the keys of a KEYED sort, null for any other type.
+    ***/
+    public long[] getLongs() {
+        return longs;
+    }
+
+    /***
+        The values of a DOUBLE sort, null for any other type.
+    ***/
+    public double[] getDoubles() {
+        return doubles;
+    }
+
+    /***
+        The payloads of a KEYED sort, in the order of their keys, null for any other type.
+    ***/
+    public int[] getPayloads() {
+        return payloads;
+    }
+}
@@ -12,11 +12,21 @@ public class TestVisualization extends Visualizer {
     private int counter;
 
     public TestVisualization() {
-        rect1 = new Rectangle(300, 300, 100, 100);
-        rect2 = new Rectangle(Visualizer.DRAW_WIDTH - 400, 300, 100, 100);
-        rect3 = new Rectangle(Visualizer.DRAW_WIDTH - 400, Visualizer.DRAW_HEIGHT - 400, 100, 100);
-        rect4 = new Rectangle(300, Visualizer.DRAW_HEIGHT - 400, 100, 100);
+        rect1 = new Rectangle(100, 100);
+        rect2 = new Rectangle(100, 100);
+        rect3 = new Rectangle(100, 100);
+        rect4 = new Rectangle(100, 100);
+        reset();
+    }
+
+    // Puts the rectangles back in their starting corners
+    public boolean reset() {
+        rect1.setLocation(300, 300);
+        rect2.setLocation(Visualizer.DRAW_WIDTH - 400, 300);
+        rect3.setLocation(Visualizer.DRAW_WIDTH - 400, Visualizer.DRAW_HEIGHT - 400);
+        rect4.setLocation(300, Visualizer.DRAW_HEIGHT - 400);
         counter = 0;
+        return true;
     }
 
     public boolean cycle() {
@@ -0,0 +1,56 @@
+/***************************************************************************
+ Shows a recorded SortTrace as a sort visualization. Nothing is sorted here,
+ every cycle applies the next recorded step so replays cost almost nothing
+ regardless of the algorithm that produced them.
+
+ Usage from Visualizer/
+     java -cp bin/ TraceReplay [trace file] [speed] [starting step]
+***************************************************************************/
+import java.io.File;
+
+public class TraceReplay extends Sort {
+    private final SortTracePlayer player;
+    // Recorded delays are divided by this
+    private final double speed;
+
+    public TraceReplay(SortTracePlayer player, double speed) {
+        super(player.getValues());
+        this.player = player;
+        this.speed = speed;
+        setTitle(player.getTitle());
+        player.seek(0, this);
+    }
+
+    public boolean cycle() {
+        return !player.step(this) || player.getStep() >= player.getStepCount();
+    }
+
+    /***
+        Jumps to the given step of the recording.
+    ***/
+    public void seek(long step) {
+        player.seek(step, this);
+    }
+
+    public int getDelay() {
+        return (int)(player.getDelay() / speed);
+    }
+
+    public String getTitle() {
+        return "Trace Replay";
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: TraceReplay [trace file] [speed] [starting step]");
+            System.exit(0);
+        }
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+        TraceReplay replay = new TraceReplay(new SortTracePlayer(new File(args[0])), speed);
+        if (args.length > 2) {
+            replay.seek(Long.parseLong(args[2]));
+        }
+        new MainFrame().show(replay);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,64 @@
+/****************************************************
+ Shows several visualizations side by side in one panel.
+
+ All of them are stepped by one VisualizationScheduler thread, and the
+ whole grid is repainted as a single frame, so dozens of visualizations
+ do not each need their own animator thread and stream of repaints.
+ A grid can be started again once its visualizations have been reset.
+****************************************************/
+import java.awt.Graphics;
+import java.awt.GridLayout;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.JPanel;
+
+public class VisualizationGrid extends JPanel {
+    private final Visualizer[] visualizations;
+    // Set when a repaint has been requested and cleared once the EDT starts painting it
+    private final AtomicBoolean paintPending = new AtomicBoolean();
+
+    /***
+        Lays out the visualizations in rows of the given number of columns.
+    ***/
+    public VisualizationGrid(Visualizer[] visualizations, int columns) {
+        super(new GridLayout(0, columns));
+        this.visualizations = visualizations;
+        for (Visualizer visualization : visualizations) {
+            add(visualization);
+        }
+    }
+
+    /***
+        Runs every visualization on one scheduler, on the calling thread, until all of them have finished
+    ***/
+    public void start() {
+        new VisualizationScheduler(visualizations, new Runnable() {
+            public void run() {
+                // One repaint of the grid paints every tile, skip it while the last one is still queued
+                if (paintPending.compareAndSet(false, true)) {
+                    repaint();
+                }
+            }
+        }).run();
+    }
+
+    /***
+        Whether this grid shows exactly these visualizations in this order, so it can be started again for them.
+    ***/
+    public boolean shows(Visualizer[] others) {
+        if (others.length != visualizations.length) {
+            return false;
+        }
+        for (int i = 0; i < others.length; i++) {
+            if (others[i] != visualizations[i] || others[i].getParent() != this) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        paintPending.set(false);
+        super.paint(g);
+    }
+}
@@ -0,0 +1,283 @@
+/****************************************************
+ Measurements of one running visualization, kept by the scheduler that
+ steps it.
+
+ Every cycle() and every paintVisualization is timed into a histogram, as
+ is how late each cycle started against the deadline it was due at,
+ cycles per second are counted over one second windows, and frames are
+ counted as they are published. A frame is dropped when a newer one takes
+ its place before the screen showed it, and cycles are coalesced when
+ several run between two frames so only the last of them is seen.
+
+ The metrics are registered as an MBean while the visualization runs, and
+ with -Dvisualizer.hud=true they are also drawn over each frame.
+
+ Everything is recorded on the scheduler thread without locks, so values
+ read over JMX while it runs can be a step out of date with each other.
+****************************************************/
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class VisualizationMetrics implements VisualizationMetricsMBean {
+    /**
+     * Whether the metrics are drawn over the visualization, set with -Dvisualizer.hud=true
+     */
+    public static final boolean HUD = Boolean.getBoolean("visualizer.hud");
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final Font HUD_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 20);
+    private static final Color HUD_BACKGROUND = new Color(0, 0, 0, 160);
+    private static final int HUD_LEFT = 10, HUD_TOP = 10, HUD_LINE = 24, HUD_WIDTH = 540;
+
+    private final Visualizer visualization;
+    private final LatencyHistogram cycleLatency = new LatencyHistogram();
+    private final LatencyHistogram paintLatency = new LatencyHistogram();
+    private final LatencyHistogram pacingError = new LatencyHistogram();
+    private long cycles, framesPublished, framesDropped, coalescedCycles;
+    // Times the visualization fell too far behind to catch up, and the time given up
+    private long scheduleSlips, slippedNanos;
+    // Cycles since the last published frame
+    private long cyclesSinceFrame;
+    // Cycles counted in the current window and the rate over the last full one
+    private long windowStart, windowCycles;
+    private double cyclesPerSecond;
+    private ObjectName name;
+
+    public VisualizationMetrics(Visualizer visualization) {
+        this.visualization = visualization;
+        windowStart = System.nanoTime();
+    }
+
+    /***
+        Records the given number of cycles run together between the given System.nanoTime()
+        values. A batch counts once in the latency histogram, at its time per cycle.
+    ***/
+    void cycled(long start, long end, int count) {
+        cycleLatency.record((end - start) / count);
+        cycles += count;
+        cyclesSinceFrame += count;
+        windowCycles += count;
+        if (end - windowStart >= NANOS_PER_SECOND) {
+            cyclesPerSecond = windowCycles * (double)NANOS_PER_SECOND / (end - windowStart);
+            windowStart = end;
+            windowCycles = 0;
+        }
+    }
+
+    /***
+        Records how late a cycle started after the time it was due.
+    ***/
+    void paced(long lateNanos) {
+        pacingError.record(lateNanos);
+    }
+
+    /***
+        Records the scheduler giving up on catching up with a backlog of the given length.
+    ***/
+    void slipped(long backlogNanos) {
+        scheduleSlips++;
+        slippedNanos += backlogNanos;
+    }
+
+    /***
+        Records a paintVisualization that took the given time.
+    ***/
+    void painted(long nanos) {
+        paintLatency.record(nanos);
+    }
+
+    /***
+        Records a published frame, dropped is true when it replaced one that was never shown.
+    ***/
+    void published(boolean dropped) {
+        framesPublished++;
+        if (dropped) {
+            framesDropped++;
+        }
+        if (cyclesSinceFrame > 1) {
+            coalescedCycles += cyclesSinceFrame - 1;
+        }
+        cyclesSinceFrame = 0;
+    }
+
+    /***
+        Draws the metrics in a box at the top left of a frame.
+    ***/
+    void paintOverlay(Graphics2D g2d) {
+        Sort sort = visualization instanceof Sort ? (Sort)visualization : null;
+        String[] lines = {
+            getVisualization(),
+            String.format(Locale.ROOT, "cycles  %d  %.0f/s", cycles, cyclesPerSecond),
+            String.format(Locale.ROOT, "cycle   p50 %s  p99 %s", micros(cycleLatency.getPercentile(50)), micros(cycleLatency.getPercentile(99))),
+            String.format(Locale.ROOT, "paint   p50 %s  p99 %s", micros(paintLatency.getPercentile(50)), micros(paintLatency.getPercentile(99))),
+            String.format(Locale.ROOT, "late    p50 %s  p99 %s", micros(pacingError.getPercentile(50)), micros(pacingError.getPercentile(99))),
+            String.format(Locale.ROOT, "speed   %sx  slips %d", speed(VisualizationScheduler.getSpeed()), scheduleSlips),
+            String.format(Locale.ROOT, "frames  %d  dropped %d", framesPublished, framesDropped),
+            String.format(Locale.ROOT, "coalesced cycles %d", coalescedCycles),
+            sort == null ? null : String.format(Locale.ROOT, "reads %d  writes %d", sort.getReads(), sort.getWrites()),
+            sort == null ? null : String.format(Locale.ROOT, "compares %d  swaps %d", sort.getComparisons(), sort.getSwaps())
+        };
+        int count = sort == null ? lines.length - 2 : lines.length;
+        g2d.setColor(HUD_BACKGROUND);
+        g2d.fillRect(HUD_LEFT, HUD_TOP, HUD_WIDTH, count * HUD_LINE + HUD_LINE / 2);
+        g2d.setFont(HUD_FONT);
+        g2d.setColor(Color.WHITE);
+        for (int i = 0; i < count; i++) {
+            g2d.drawString(lines[i], HUD_LEFT + 8, HUD_TOP + (i + 1) * HUD_LINE);
+        }
+    }
+
+    private static String speed(double multiplier) {
+        return multiplier == Math.rint(multiplier) ? String.valueOf((long)multiplier) : String.format(Locale.ROOT, "%.3g", multiplier);
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1fus", nanos / 1000.0);
+    }
+
+    /***
+        Registers these metrics with the platform MBean server, under the class name of the
+        visualization and its position in the scheduler.
+    ***/
+    void register(int index) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName candidate = new ObjectName("Visualizer:type=Visualization,name="
+                + ObjectName.quote(getVisualization()) + ",index=" + index);
+            if (!server.isRegistered(candidate)) {
+                server.registerMBean(this, candidate);
+                name = candidate;
+            }
+        } catch (JMException e) {
+            System.out.println("ERROR - could not register metrics: " + e.getMessage());
+        }
+    }
+
+    void unregister() {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            System.out.println("ERROR - could not unregister metrics: " + e.getMessage());
+        }
+        name = null;
+    }
+
+    public String getVisualization() {
+        return visualization.getClass().getName();
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public double getCyclesPerSecond() {
+        return cyclesPerSecond;
+    }
+
+    public double getCycleMeanNanos() {
+        return cycleLatency.getMean();
+    }
+
+    public long getCycleP50Nanos() {
+        return cycleLatency.getPercentile(50);
+    }
+
+    public long getCycleP99Nanos() {
+        return cycleLatency.getPercentile(99);
+    }
+
+    public long getCycleMaxNanos() {
+        return cycleLatency.getMax();
+    }
+
+    public double getPaintMeanNanos() {
+        return paintLatency.getMean();
+    }
+
+    public long getPaintP50Nanos() {
+        return paintLatency.getPercentile(50);
+    }
+
+    public long getPaintP99Nanos() {
+        return paintLatency.getPercentile(99);
+    }
+
+    public long getPaintMaxNanos() {
+        return paintLatency.getMax();
+    }
+
+    public double getPacingMeanNanos() {
+        return pacingError.getMean();
+    }
+
+    public long getPacingP50Nanos() {
+        return pacingError.getPercentile(50);
+    }
+
+    public long getPacingP99Nanos() {
+        return pacingError.getPercentile(99);
+    }
+
+    public long getPacingMaxNanos() {
+        return pacingError.getMax();
+    }
+
+    public long getScheduleSlips() {
+        return scheduleSlips;
+    }
+
+    public long getSlippedNanos() {
+        return slippedNanos;
+    }
+
+    public double getSpeed() {
+        return VisualizationScheduler.getSpeed();
+    }
+
+    public void setSpeed(double multiplier) {
+        VisualizationScheduler.setSpeed(multiplier);
+    }
+
+    public long getFramesPublished() {
+        return framesPublished;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public long getCoalescedCycles() {
+        return coalescedCycles;
+    }
+
+    public long getReads() {
+        return visualization instanceof Sort ? ((Sort)visualization).getReads() : 0;
+    }
+
+    public long getWrites() {
+        return visualization instanceof Sort ? ((Sort)visualization).getWrites() : 0;
+    }
+
+    public long getComparisons() {
+        return visualization instanceof Sort ? ((Sort)visualization).getComparisons() : 0;
+    }
+
+    public long getSwaps() {
+        return visualization instanceof Sort ? ((Sort)visualization).getSwaps() : 0;
+    }
+
+    public void resetLatencies() {
+        cycleLatency.reset();
+        paintLatency.reset();
+        pacingError.reset();
+    }
+}
@@ -0,0 +1,70 @@
+/****************************************************
+ Management interface of VisualizationMetrics, readable from jconsole or
+ any other JMX client while a visualization is running.
+
+ Latencies are in nanoseconds. Pacing is how late cycles start after their
+ deadlines, and a slip is the scheduler giving up on catching up after
+ falling too far behind. The operation counts are those of a Sort and are
+ 0 for other visualizations.
+****************************************************/
+public interface VisualizationMetricsMBean {
+    String getVisualization();
+
+    long getCycles();
+
+    double getCyclesPerSecond();
+
+    double getCycleMeanNanos();
+
+    long getCycleP50Nanos();
+
+    long getCycleP99Nanos();
+
+    long getCycleMaxNanos();
+
+    double getPaintMeanNanos();
+
+    long getPaintP50Nanos();
+
+    long getPaintP99Nanos();
+
+    long getPaintMaxNanos();
+
+    double getPacingMeanNanos();
+
+    long getPacingP50Nanos();
+
+    long getPacingP99Nanos();
+
+    long getPacingMaxNanos();
+
+    long getScheduleSlips();
+
+    long getSlippedNanos();
+
+    /***
+        Speed multiplier of every running visualization, not only this one. 0 pauses them.
+    ***/
+    double getSpeed();
+
+    void setSpeed(double multiplier);
+
+    long getFramesPublished();
+
+    long getFramesDropped();
+
+    long getCoalescedCycles();
+
+    long getReads();
+
+    long getWrites();
+
+    long getComparisons();
+
+    long getSwaps();
+
+    /***
+        Starts the latency histograms over, for example after changing a setting.
+    ***/
+    void resetLatencies();
+}
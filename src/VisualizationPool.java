@@ -0,0 +1,117 @@
+/****************************************************
+ Hands out the visualizations of a registry one after another, forever,
+ keeping one instance of each to show again.
+
+ A visualization that has been shown is reset() and handed out again
+ instead of being created anew, so a display that cycles through them for
+ days keeps the same panels, frame buffers, arrays and generator threads
+ rather than piling up garbage (and threads) with every pass. Those that
+ can not be reset are created again each time they come up, and the
+ instance they replace is closed if it is AutoCloseable.
+
+ The instances handed out since the last release() are in use, so asking
+ for one again in the same pass (a grid with more tiles than there are
+ visualizations) creates a separate instance that is used once and closed on
+ the next release().
+****************************************************/
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class VisualizationPool {
+    private final VisualizationRegistry registry;
+    // Kept instance of each visualization of the registry, by its position
+    private Visualizer[] instances = new Visualizer[0];
+    private boolean[] inUse = new boolean[0];
+    // Instances handed out in this pass that are not kept, closed on release()
+    private final List<Visualizer> extras = new ArrayList<>();
+    // Position of the visualization handed out next
+    private int next;
+    private long created;
+
+    public VisualizationPool(VisualizationRegistry registry) {
+        this.registry = registry;
+    }
+
+    /***
+        The next visualization, ready to start, going back to the first after the last one.
+        Returns null when the registry has found no visualizations at all.
+    ***/
+    public Visualizer next() {
+        while (true) {
+            int index = next;
+            Visualizer pooled = index < instances.length ? instances[index] : null;
+            if (pooled != null && !inUse[index] && pooled.reset()) {
+                inUse[index] = true;
+                next++;
+                return pooled;
+            }
+            Visualizer visualization = registry.create(index);
+            if (visualization == null) {
+                if (registry.size() == 0) {
+                    return null;
+                }
+                next = 0;
+                continue;
+            }
+            created++;
+            next++;
+            if (pooled != null && inUse[index]) {
+                // Shown twice in one pass, this one is used once and dropped
+                extras.add(visualization);
+                return visualization;
+            }
+            if (index >= instances.length) {
+                instances = Arrays.copyOf(instances, Math.max(index + 1, 2 * instances.length));
+                inUse = Arrays.copyOf(inUse, instances.length);
+            }
+            close(pooled);
+            instances[index] = visualization;
+            inUse[index] = true;
+            return visualization;
+        }
+    }
+
+    /***
+        Marks every visualization handed out as finished with, so each can be reset and handed
+        out again, and closes those that are not kept.
+    ***/
+    public void release() {
+        Arrays.fill(inUse, false);
+        for (Visualizer extra : extras) {
+            close(extra);
+        }
+        extras.clear();
+    }
+
+    /***
+        Whether the visualization is kept to be shown again, as opposed to one that is dropped
+        once it has been shown.
+    ***/
+    public boolean isPooled(Visualizer visualization) {
+        for (Visualizer instance : instances) {
+            if (instance == visualization) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /***
+        Number of visualizations created so far. Once every visualization has been shown this
+        only grows for those that can not be reset.
+    ***/
+    public long getCreated() {
+        return created;
+    }
+
+    private static void close(Visualizer visualization) {
+        if (visualization instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable)visualization).close();
+            } catch (Exception e) {
+                System.out.println("ERROR - could not close " + visualization.getClass().getName() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/****************************************************
+ Finds the visualizations that can be shown and remembers how to create them.
+
+ Classes are resolved and checked once, on a background thread, and their
+ constructors are kept so creating the next visualization is a plain
+ constructor call. Visualizations become available one at a time as they
+ are found, so the first one can start before discovery has finished.
+
+ Visualizations are found through ServiceLoader (jars can list theirs in
+ META-INF/services/Visualizer) and by scanning the default package of every
+ directory and jar on the class path.
+****************************************************/
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+public class VisualizationRegistry {
+    private final List<Constructor<? extends Visualizer>> constructors = new ArrayList<>();
+    private final Set<Class<?>> found = new LinkedHashSet<>();
+    private boolean complete;
+
+    private VisualizationRegistry() {
+    }
+
+    /***
+        Starts discovering every visualization that can be created without arguments.
+    ***/
+    public static VisualizationRegistry discover() {
+        final VisualizationRegistry registry = new VisualizationRegistry();
+        registry.startDiscovery(new Runnable() {
+            public void run() {
+                try {
+                    Iterator<ServiceLoader.Provider<Visualizer>> providers = ServiceLoader.load(Visualizer.class).stream().iterator();
+                    while (providers.hasNext()) {
+                        registry.register(providers.next().type());
+                    }
+                } catch (ServiceConfigurationError e) {
+                    System.out.println("ERROR - bad visualization service entry: " + e.getMessage());
+                }
+                try {
+                    for (String name : classPathNames()) {
+                        try {
+                            registry.register(Class.forName(name, false, VisualizationRegistry.class.getClassLoader()));
+                        } catch (ClassNotFoundException | LinkageError e) {
+                            // Not something we can show
+                        }
+                    }
+                } catch (IOException e) {
+                    System.out.println("ERROR - could not read the class path: " + e.getMessage());
+                }
+            }
+        });
+        return registry;
+    }
+
+    /***
+        Resolves the named classes, in order. Names that are not visualizations are skipped,
+        names that can not be found at all stop the program.
+    ***/
+    public static VisualizationRegistry of(final String[] names) {
+        final VisualizationRegistry registry = new VisualizationRegistry();
+        registry.startDiscovery(new Runnable() {
+            public void run() {
+                for (String name : names) {
+                    try {
+                        registry.register(Class.forName(name, false, VisualizationRegistry.class.getClassLoader()));
+                    } catch (ClassNotFoundException | LinkageError e) {
+                        System.out.println("ERROR - class " + name + " could not be found. Please ensure it has been compiled.");
+                        System.exit(0);
+                    }
+                }
+            }
+        });
+        return registry;
+    }
+
+    private void startDiscovery(final Runnable discovery) {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    discovery.run();
+                } finally {
+                    finish();
+                }
+            }
+        }, "visualization-discovery");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Keeps the constructor of a class if it is a visualization that can be created without arguments
+    private synchronized void register(Class<?> myClass) {
+        if (!Visualizer.class.isAssignableFrom(myClass) || Modifier.isAbstract(myClass.getModifiers())
+                || !found.add(myClass)) {
+            return;
+        }
+        try {
+            constructors.add(myClass.asSubclass(Visualizer.class).getConstructor());
+            notifyAll();
+        } catch (NoSuchMethodException e) {
+            // Visualizations that need arguments (such as TraceReplay) have to be started by hand
+        }
+    }
+
+    private synchronized void finish() {
+        complete = true;
+        notifyAll();
+    }
+
+    /***
+        Creates a new instance of the visualization at the given position, waiting for discovery
+        to reach it if needed. Returns null once discovery has finished without reaching it.
+    ***/
+    public Visualizer create(int index) {
+        Constructor<? extends Visualizer> constructor;
+        synchronized (this) {
+            while (index >= constructors.size() && !complete) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    System.out.println("Caught InterruptedException: " + e.getMessage());
+                    return null;
+                }
+            }
+            if (index >= constructors.size()) {
+                return null;
+            }
+            constructor = constructors.get(index);
+        }
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create " + constructor.getDeclaringClass().getName(), e.getCause());
+        }
+    }
+
+    /***
+        Number of visualizations found so far.
+    ***/
+    public synchronized int size() {
+        return constructors.size();
+    }
+
+    /***
+        Names of the top level classes in the default package of every directory and jar on the
+        class path, in alphabetical order.
+    ***/
+    static List<String> classPathNames() throws IOException {
+        List<String> files = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            File file = new File(entry);
+            if (file.isDirectory()) {
+                String[] names = file.list();
+                if (names != null) {
+                    files.addAll(Arrays.asList(names));
+                }
+            } else if (file.getName().endsWith(".jar")) {
+                try (JarFile jar = new JarFile(file)) {
+                    Enumeration<JarEntry> entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        files.add(entries.nextElement().getName());
+                    }
+                }
+            }
+        }
+
+        List<String> classes = new ArrayList<>();
+        for (String file : files) {
+            if (file.endsWith(".class") && !file.contains("/") && !file.contains("$")) {
+                classes.add(file.substring(0, file.length() - ".class".length()));
+            }
+        }
+        Collections.sort(classes);
+        return classes;
+    }
+}
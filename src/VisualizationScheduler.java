@@ -0,0 +1,259 @@
+/****************************************************
+ Steps any number of visualizations from a single thread.
+
+ Each visualization keeps its own deadline: a cycle is due one
+ getDelayNanos() after the previous one was due, so oversleeping is paid
+ back instead of accumulating. The scheduler parks on System.nanoTime()
+ deadlines rather than sleeping whole milliseconds.
+
+ Every delay is divided by a speed shared by all schedulers, set with
+ -Dvisualizer.speed=[multiplier] and changeable while they run. Above 1x
+ cycles come closer together, running several per frame once they are
+ due more often than the display refreshes. A speed of 0 pauses. When the
+ speed changes the time left until each deadline is rescaled, so the
+ change shows at once even in the middle of a long delay. Every cycle
+ that is due runs before the next frame, and at most one frame per
+ display refresh is requested for all of them together, however many
+ cycles ran in between. Before a frame is requested every
+ visualization that changed draws its state into a new frame on this
+ thread, so the Swing thread never sees a step in progress.
+
+ The cycles due at once are run by a single cycle(int) call, sized by the
+ delay of the last cycle, so at high speeds a visualization steps in its
+ own loop instead of returning here after each cycle. Cycles whose delays
+ shrink within a batch just find the next batch due at once, and ones
+ whose delays grow run a little early.
+
+ Each visualization is timed into a VisualizationMetrics, registered as an
+ MBean for as long as the scheduler runs. How late each cycle started
+ against its deadline is kept there as the pacing error, along with how
+ often (and by how much) a visualization fell so far behind it gave up
+ catching up.
+****************************************************/
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+public class VisualizationScheduler implements Runnable {
+    private final static long NANOS_PER_MILLI = 1000000L, NANOS_PER_SECOND = 1000000000L;
+    private final static int DEFAULT_REFRESH_RATE = 60;
+    // Upper bound on cycles run between two frames so a fast visualization can not starve painting
+    private final static int MAX_STEPS_PER_FRAME = 100000;
+    // How far a visualization may fall behind schedule before it stops trying to catch up
+    private final static long MAX_CATCH_UP_NANOS = 250 * NANOS_PER_MILLI;
+    private final static double MAX_SPEED = 1000000;
+
+    // Multiplier of every visualization's speed, 0 when paused
+    private static volatile double speed = Math.max(0, Double.parseDouble(System.getProperty("visualizer.speed", "1")));
+    // Threads running a scheduler, woken when the speed changes
+    private static final Set<Thread> RUNNING = ConcurrentHashMap.newKeySet();
+
+    private final Visualizer[] visualizations;
+    private final long[] nextStep;
+    // done is set once cycle() reports completion, finished once the final delay has also passed
+    private final boolean[] done, finished;
+    // Set when a visualization has cycled since it last drew a frame
+    private final boolean[] unpublished;
+    private final VisualizationMetrics[] metrics;
+    // Asks for every visualization to be painted
+    private final Runnable frameRequest;
+
+    /***
+        Creates a scheduler for the given visualizations. frameRequest is run (on the scheduler
+        thread) whenever a new frame should be shown.
+    ***/
+    public VisualizationScheduler(Visualizer[] visualizations, Runnable frameRequest) {
+        this.visualizations = visualizations;
+        this.frameRequest = frameRequest;
+        nextStep = new long[visualizations.length];
+        done = new boolean[visualizations.length];
+        finished = new boolean[visualizations.length];
+        unpublished = new boolean[visualizations.length];
+        metrics = new VisualizationMetrics[visualizations.length];
+        for (int i = 0; i < visualizations.length; i++) {
+            metrics[i] = new VisualizationMetrics(visualizations[i]);
+        }
+    }
+
+    /***
+        Sets how many times faster than their delays every visualization runs, 0 to pause them.
+        Takes effect at once in every running scheduler.
+    ***/
+    public static void setSpeed(double multiplier) {
+        if (!(multiplier >= 0)) {
+            throw new IllegalArgumentException("Speed must be 0 or more, not " + multiplier);
+        }
+        speed = Math.min(MAX_SPEED, multiplier);
+        for (Thread thread : RUNNING) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public static double getSpeed() {
+        return speed;
+    }
+
+    /***
+        Measurements of the visualization at the given position.
+    ***/
+    public VisualizationMetrics getMetrics(int index) {
+        return metrics[index];
+    }
+
+    /***
+        Cycles every visualization until all of them have completed. Each one that completes
+        keeps its final frame on screen while the others carry on.
+    ***/
+    @Override
+    public void run() {
+        for (int i = 0; i < visualizations.length; i++) {
+            metrics[i].register(i);
+        }
+        RUNNING.add(Thread.currentThread());
+        try {
+            schedule();
+        } finally {
+            RUNNING.remove(Thread.currentThread());
+            for (VisualizationMetrics visualizationMetrics : metrics) {
+                visualizationMetrics.unregister();
+            }
+        }
+    }
+
+    private void schedule() {
+        long frameNanos = NANOS_PER_SECOND / refreshRate();
+        long now = System.nanoTime();
+        long nextFrame = now;
+        for (int i = 0; i < visualizations.length; i++) {
+            nextStep[i] = now;
+            done[i] = false;
+            finished[i] = false;
+            unpublished[i] = false;
+            // Show the starting state before the first cycle
+            visualizations[i].publishFrame(metrics[i]);
+        }
+        frameRequest.run();
+        int remaining = visualizations.length;
+        boolean changed = false;
+        double pacedSpeed = speed;
+
+        while (remaining > 0) {
+            now = System.nanoTime();
+            double currentSpeed = speed;
+            if (currentSpeed != pacedSpeed) {
+                respeed(now, pacedSpeed, currentSpeed);
+                pacedSpeed = currentSpeed;
+            }
+            long wakeUp = Long.MAX_VALUE;
+            for (int i = 0; i < visualizations.length; i++) {
+                // While paused nothing is due, not even the end of a finished one's last delay
+                if (finished[i] || currentSpeed == 0) {
+                    continue;
+                }
+                if (!done[i]) {
+                    // Run every cycle whose time has come, as many at once as the current delay makes due
+                    int steps = 0;
+                    while (!done[i] && now - nextStep[i] >= 0 && steps < MAX_STEPS_PER_FRAME) {
+                        long delay = (long)(visualizations[i].getDelayNanos() / currentSpeed);
+                        int due = MAX_STEPS_PER_FRAME - steps;
+                        if (delay > 0) {
+                            due = (int)Math.min(due, (now - nextStep[i]) / delay + 1);
+                        }
+                        long start = System.nanoTime();
+                        int ran = visualizations[i].cycle(due);
+                        done[i] = ran < due;
+                        // The cycle that completed counts too, and its delay is the final one
+                        int cycles = done[i] ? ran + 1 : ran;
+                        long delays = visualizations[i].getBatchDelayNanos();
+                        if (done[i]) {
+                            delays += visualizations[i].getDelayNanos();
+                        }
+                        metrics[i].cycled(start, System.nanoTime(), cycles);
+                        metrics[i].paced(start - nextStep[i]);
+                        nextStep[i] += (long)(delays / currentSpeed);
+                        steps += cycles;
+                    }
+                    unpublished[i] |= steps > 0;
+                    changed |= steps > 0;
+                    // If the visualization can not keep up, drop the backlog rather than spiral
+                    if (!done[i] && now - nextStep[i] > MAX_CATCH_UP_NANOS) {
+                        metrics[i].slipped(now - nextStep[i]);
+                        nextStep[i] = now;
+                    }
+                }
+                // Once done, the final frame is held for the last delay before it counts as finished
+                if (done[i] && now - nextStep[i] >= 0) {
+                    finished[i] = true;
+                    remaining--;
+                    continue;
+                }
+                wakeUp = Math.min(wakeUp, nextStep[i]);
+            }
+
+            // Show at most one frame per display refresh, however many cycles ran
+            if (changed && (remaining == 0 || now - nextFrame >= 0)) {
+                for (int i = 0; i < visualizations.length; i++) {
+                    if (unpublished[i]) {
+                        unpublished[i] = false;
+                        visualizations[i].publishFrame(metrics[i]);
+                    }
+                }
+                frameRequest.run();
+                changed = false;
+                nextFrame += frameNanos;
+                if (now - nextFrame >= 0) {
+                    nextFrame = now + frameNanos;
+                }
+            }
+
+            // Wait for the next cycle, or for the next frame if one is owed. A speed change
+            // wakes the wait early and the deadlines are looked at again.
+            if (remaining > 0) {
+                if (changed) {
+                    parkUntil(wakeUp == Long.MAX_VALUE ? nextFrame : Math.min(wakeUp, nextFrame));
+                } else if (wakeUp == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    parkUntil(wakeUp);
+                }
+                if (Thread.interrupted()) {
+                    System.out.println("Error - Interrupted while waiting for the next cycle");
+                }
+            }
+        }
+    }
+
+    // Stretches or shrinks the time left until each deadline by the change in speed
+    private void respeed(long now, double oldSpeed, double newSpeed) {
+        for (int i = 0; i < visualizations.length; i++) {
+            long left = nextStep[i] - now;
+            if (oldSpeed == 0 || newSpeed == 0) {
+                // Nothing was running, or nothing will until the speed changes again
+                nextStep[i] = now;
+            } else if (left > 0) {
+                nextStep[i] = now + (long)(left * oldSpeed / newSpeed);
+            }
+        }
+    }
+
+    private void parkUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    // Refresh rate of the default screen, or 60 Hz when it can not be determined
+    static int refreshRate() {
+        if (!GraphicsEnvironment.isHeadless()) {
+            int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDisplayMode().getRefreshRate();
+            if (rate != DisplayMode.REFRESH_RATE_UNKNOWN) {
+                return rate;
+            }
+        }
+        return DEFAULT_REFRESH_RATE;
+    }
+}
@@ -0,0 +1,132 @@
+/****************************************************
+ Moves a visualization to any step without showing the steps in between.
+
+ Fast-forwarding runs the cycles in cycle(int) batches, with no delays and
+ nothing painted. Along the way a checkpoint of the visualization's state is kept
+ every so many steps, so seeking back restores the closest checkpoint
+ before the target and only runs the steps after it. Checkpoints are kept
+ within a memory budget: when they outgrow it every other one is dropped
+ and they are taken half as often from then on.
+
+ Going back needs a visualization that can save and restore its state
+ (see Visualizer.saveState), others can only be fast-forwarded.
+****************************************************/
+import java.util.ArrayList;
+import java.util.List;
+
+public class VisualizationSeeker {
+    // Memory the checkpoints of one visualization may use, set with -Dvisualizer.checkpointBudget=[bytes]
+    private static final long DEFAULT_BUDGET = Long.getLong("visualizer.checkpointBudget", 64L << 20);
+    private static final long MIN_INTERVAL = 1024;
+
+    private final Visualizer visualization;
+    private final long budget;
+    // checkpoints[k] is the state after k * interval steps
+    private final List<VisualizationState> checkpoints = new ArrayList<>();
+    private long interval = MIN_INTERVAL, checkpointBytes;
+    private long step;
+    private boolean done, restorable = true;
+
+    /***
+        Starts seeking from the current state of the visualization, which counts as step 0.
+    ***/
+    public VisualizationSeeker(Visualizer visualization) {
+        this(visualization, DEFAULT_BUDGET);
+    }
+
+    public VisualizationSeeker(Visualizer visualization, long budget) {
+        this.visualization = visualization;
+        this.budget = budget;
+        checkpoint();
+    }
+
+    public Visualizer getVisualization() {
+        return visualization;
+    }
+
+    /***
+        Number of cycles run since the starting state.
+    ***/
+    public long getStep() {
+        return step;
+    }
+
+    /***
+        Whether cycle() has reported the visualization complete at the current step.
+    ***/
+    public boolean isDone() {
+        return done;
+    }
+
+    /***
+        Whether seek can go back to earlier steps.
+    ***/
+    public boolean isRestorable() {
+        return restorable;
+    }
+
+    /***
+        Runs cycles at full speed until the target step or until the visualization completes.
+        Returns true if the target step was reached.
+    ***/
+    public boolean fastForward(long target) {
+        while (step < target && !done) {
+            // Everything up to the next checkpoint or the target runs as one batch
+            int budget = (int)Math.min(Math.min(target - step, interval - step % interval), Integer.MAX_VALUE);
+            int ran = visualization.cycle(budget);
+            step += ran;
+            if (ran < budget) {
+                // The cycle that completed it counts as a step
+                done = true;
+                step++;
+            }
+            if (step % interval == 0) {
+                checkpoint();
+            }
+        }
+        return step >= target;
+    }
+
+    /***
+        Moves to the target step, going back through the closest checkpoint when it is behind
+        the current one. Returns true if the target step was reached.
+    ***/
+    public boolean seek(long target) {
+        if (target < step) {
+            if (!restorable) {
+                throw new UnsupportedOperationException(visualization.getClass().getName()
+                    + " can not restore its state, so it can only be fast-forwarded");
+            }
+            int k = (int)Math.min(target / interval, checkpoints.size() - 1);
+            visualization.restoreState(checkpoints.get(k));
+            step = k * interval;
+            done = false;
+        }
+        return fastForward(target);
+    }
+
+    // Keeps the state of the current step if it is the next checkpoint due
+    private void checkpoint() {
+        if (!restorable || step / interval != checkpoints.size()) {
+            return;
+        }
+        VisualizationState state = visualization.saveState();
+        if (state == null) {
+            restorable = false;
+            checkpoints.clear();
+            return;
+        }
+        checkpoints.add(state);
+        checkpointBytes += state.getBytes();
+        // Over budget, keep every other checkpoint and take them half as often
+        while (checkpointBytes > budget && checkpoints.size() > 1) {
+            checkpointBytes = 0;
+            for (int k = 0; 2 * k < checkpoints.size(); k++) {
+                checkpoints.set(k, checkpoints.get(2 * k));
+                checkpointBytes += checkpoints.get(k).getBytes();
+            }
+            checkpoints.subList((checkpoints.size() + 1) / 2, checkpoints.size()).clear();
+            interval *= 2;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/****************************************************
+ Copy of everything a visualization needs to carry on from a given step,
+ returned by Visualizer.saveState and handed back to Visualizer.restoreState.
+****************************************************/
+public interface VisualizationState {
+    /***
+        Approximate memory held by the copy, used to keep checkpoints within a budget.
+    ***/
+    long getBytes();
+}
@@ -5,19 +5,43 @@
  algorithm. Children of this class MUST override the abstract methods. All other actions for
  configuring the JPanel are handled by this class
 ****************************************************/
+import java.awt.AlphaComposite;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
-import java.awt.image.ReplicateScaleFilter;
-import java.awt.image.FilteredImageSource;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.awt.Toolkit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JPanel;
 
 
 public abstract class Visualizer extends JPanel implements Runnable {
-    private Thread animator;
     public final static int DRAW_WIDTH = 1000, DRAW_HEIGHT = 1000;
 
+    // Set when a repaint has been requested and cleared once the EDT starts painting it
+    private final AtomicBoolean paintPending = new AtomicBoolean();
+
+    /*
+     * Frames are drawn on the thread running cycle() and shown by the EDT through three
+     * buffers: the one being drawn, the one being shown, and the latest finished one, which
+     * both sides swap theirs with atomically. Neither side waits for the other, a frame is
+     * always a whole step, and the buffers are made once and then reused.
+     */
+    private static final int FRAME_INDEX = 3, FRAME_FRESH = 4;
+    private static final AffineTransform IDENTITY = new AffineTransform();
+    private final BufferedImage[] frames = new BufferedImage[3];
+    private final Graphics2D[] frameGraphics = new Graphics2D[3];
+    // Index of the latest finished frame, with FRAME_FRESH set until the EDT takes it
+    private final AtomicInteger latestFrame = new AtomicInteger(1);
+    // Only used by the drawing thread, publishedFrame is -1 until the first frame
+    private int drawingFrame = 0, publishedFrame = -1;
+    // Only used by the EDT
+    private int shownFrame = 2;
+    private boolean frameShown;
+    // Set by every cycle(int) call, see getBatchDelayNanos
+    protected long batchDelayNanos;
+
     
     /***
         Override this class to paint your visualization. java.awt.Graphics2D is a great library for drawing
@@ -29,6 +53,8 @@ public abstract class Visualizer extends JPanel implements Runnable {
 
         Drawing actually occurs on an image - this means the user does not have access to
         JPanel (and other such Component children classes) methods such as setBackground(Color color)
+
+        This is called on the same thread as cycle(), between cycles, not on the Swing thread.
     ***/
     public abstract void paintVisualization(Graphics2D g2d);
 
@@ -41,25 +67,86 @@ public abstract class Visualizer extends JPanel implements Runnable {
     ***/
     public abstract boolean cycle();
 
+    /***
+        Runs up to maxSteps cycles in one call, for callers that want many steps at once and
+        nothing shown in between. Returns the number of cycles run that did not complete the
+        visualization, so a result below maxSteps means a cycle reported it complete (that
+        cycle is not counted, like a cycle() that returns true). Afterwards batchDelayNanos
+        holds the sum of getDelayNanos() after each of the counted cycles.
+
+        By default this calls cycle() repeatedly. Override it, together with cycle(), to run
+        the steps in a loop of the visualization's own, which the JIT can compile as one.
+    ***/
+    public int cycle(int maxSteps) {
+        long delays = 0;
+        int steps = 0;
+        while (steps < maxSteps && !cycle()) {
+            delays += getDelayNanos();
+            steps++;
+        }
+        batchDelayNanos = delays;
+        return steps;
+    }
+
+    /***
+        Sum of the delays after each cycle counted by the last cycle(int) call.
+    ***/
+    public long getBatchDelayNanos() {
+        return batchDelayNanos;
+    }
+
     /***
         The value returned by this function determines how fast your visualization occurs.
-        The delay is the number of milliseconds between cycles and paints. The smaller the value the quicker the 
-        visualization will occur.
+        The delay is the number of milliseconds between cycles. The smaller the value the quicker the 
+        visualization will occur. Paints are limited to the display refresh rate, so short delays run several
+        cycles per displayed frame.
     ***/
     public abstract int getDelay();
 
+    /***
+        The delay between cycles in nanoseconds, which is what the scheduler actually waits. Override
+        this instead of getDelay for delays shorter or finer than a millisecond.
+    ***/
+    public long getDelayNanos() {
+        return getDelay() * 1000000L;
+    }
+
+
+    /***
+        Override this to let a long running display show the visualization again without
+        creating a new one: put it back to its starting state, with new starting values where
+        it has any, reusing what it already holds. Returns false when it can not be reset, which
+        is the default, and a new instance is created instead.
+    ***/
+    public boolean reset() {
+        return false;
+    }
+
+    /***
+        Override this and restoreState to let VisualizationSeeker jump back to earlier steps.
+        Returns a copy of everything cycle() depends on, or null when the visualization can only
+        move forward, which is the default.
+    ***/
+    protected VisualizationState saveState() {
+        return null;
+    }
+
+    /***
+        Puts back a state returned by saveState. The same state may be restored more than once,
+        so it must be copied rather than taken over.
+    ***/
+    protected void restoreState(VisualizationState state) {
+        throw new UnsupportedOperationException(getClass().getName() + " can not restore its state");
+    }
+
 
     /***
-        Starts the visualizer animation/cycle thread and waits for it to finish before returning control
+        Runs the visualization's cycles on the calling thread, returning once it has completed.
+        A display showing one visualization after another reuses its thread instead of starting
+        a new one for each.
     ***/
     public void start() {
-        animator = new Thread(this);
-        animator.start();
-        try {
-            animator.join();
-        } catch (InterruptedException e) {
-            System.out.println("Caught InterruptedException: " + e.getMessage());
-        }
+        run();
     }
 
     @Override
@@ -70,52 +157,74 @@ public abstract class Visualizer extends JPanel implements Runnable {
     @Override
     public void paint(Graphics g){
         super.paint(g);
-        // Have the extending class draw on an image so that it can be resized as needed
-        Image bufferImage = createImage(DRAW_WIDTH, DRAW_HEIGHT);
-        // Give control to visualization to draw on buffer
-        paintVisualization((Graphics2D)bufferImage.getGraphics());
-        int width = getWidth();
-        int height = getHeight(); 
-        // Scale and resize the image
-        ReplicateScaleFilter scale = new ReplicateScaleFilter(width, height);
-        FilteredImageSource fis = new FilteredImageSource(bufferImage.getSource(), scale);
-        Image croppedImage = createImage(fis);
-        g.drawImage(croppedImage, 0, 0, null);
+        // Cleared before drawing so any cycle that lands during this paint asks for another frame
+        paintPending.set(false);
+        // Trade the frame shown last time for the latest one, if one has been finished since
+        if ((latestFrame.get() & FRAME_FRESH) != 0) {
+            shownFrame = latestFrame.getAndSet(shownFrame) & FRAME_INDEX;
+            frameShown = true;
+        }
+        if (frameShown) {
+            g.drawImage(frames[shownFrame], 0, 0, getWidth(), getHeight(), null);
+        }
         Toolkit.getDefaultToolkit().sync();
     }
 
-    @Override
-    public void run() {
-        long beforeTime, timeDiff, sleep;
-
-        beforeTime = System.currentTimeMillis();
-        boolean done;
-
-        while (true) {
-            done = cycle();
-            repaint();
-
-            timeDiff = System.currentTimeMillis() - beforeTime;
-            sleep = getDelay() - timeDiff;
-
-            if (sleep < 0) {
-                sleep = 2;
+    /***
+        Has the visualization draw its current state into a free frame and makes that the latest one,
+        timing the drawing and counting the frame in metrics. Called on the thread running cycle(),
+        so a frame never shows part of a step.
+    ***/
+    void publishFrame(VisualizationMetrics metrics) {
+        if (frames[drawingFrame] == null) {
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = new BufferedImage(DRAW_WIDTH, DRAW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+                frameGraphics[i] = frames[i].createGraphics();
             }
+        }
+        // The graphics are reused, so undo anything the last frame left set on them
+        Graphics2D g2d = frameGraphics[drawingFrame];
+        g2d.setTransform(IDENTITY);
+        g2d.setClip(null);
+        g2d.setComposite(AlphaComposite.SrcOver);
+        long start = System.nanoTime();
+        paintVisualization(g2d);
+        metrics.painted(System.nanoTime() - start);
+        if (VisualizationMetrics.HUD) {
+            metrics.paintOverlay(g2d);
+        }
+        publishedFrame = drawingFrame;
+        int replaced = latestFrame.getAndSet(drawingFrame | FRAME_FRESH);
+        drawingFrame = replaced & FRAME_INDEX;
+        // The frame given back was never taken by the EDT
+        metrics.published((replaced & FRAME_FRESH) != 0);
+    }
 
-            try {
-                Thread.sleep(sleep);
-            } catch (InterruptedException e) {
-                System.out.println("Error - Interrupted: " + e.getMessage());
-            }
+    /***
+        The frame published last, or null before the first one. Only to be read on the thread
+        running cycle(), where it stays unchanged until the next frame is published (the EDT
+        may be showing it, but only ever reads it).
+    ***/
+    BufferedImage getPublishedFrame() {
+        return publishedFrame < 0 ? null : frames[publishedFrame];
+    }
 
-            beforeTime = System.currentTimeMillis();
-            
-            // Animation has finished, kill thread
-            if (done) {
-                return;
+    @Override
+    public void run() {
+        new VisualizationScheduler(new Visualizer[] {this}, new Runnable() {
+            public void run() {
+                requestFrame();
             }
-        }
+        }).run();
     }
 
-
+    /***
+        Asks Swing to paint the current state, unless the previous request has not been painted yet.
+        Skipping here means a slow EDT only ever sees the latest state instead of a queue of stale frames.
+    ***/
+    private void requestFrame() {
+        if (paintPending.compareAndSet(false, true)) {
+            repaint();
+        }
+    }
 }
\ No newline at end of file